@@ -0,0 +1,43 @@
+// Writes .gz and .br copies of the built index.html, scripts and styles so the backend can serve
+// them without compressing per request. Usage: node scripts/precompress.js [buildDir]
+const fs = require('fs');
+const path = require('path');
+const zlib = require('zlib');
+
+const buildDir = path.resolve(process.argv[2] || 'build');
+const COMPRESSIBLE = /\.(html|js|css|json|txt|svg)$/;
+
+const walk = (dir) =>
+  fs.readdirSync(dir, { withFileTypes: true }).flatMap((entry) => {
+    const full = path.join(dir, entry.name);
+    return entry.isDirectory() ? walk(full) : [full];
+  });
+
+// Variants left over from an earlier build would be served for files that no longer exist
+const topLevel = fs.readdirSync(buildDir).map((name) => path.join(buildDir, name));
+for (const file of [...topLevel, ...walk(path.join(buildDir, 'static'))]) {
+  if (/\.(gz|br)$/.test(file) && !fs.existsSync(file.slice(0, -3))) {
+    fs.unlinkSync(file);
+  }
+}
+
+const files = [
+  path.join(buildDir, 'index.html'),
+  ...walk(path.join(buildDir, 'static')),
+].filter((file) => COMPRESSIBLE.test(file) && fs.existsSync(file));
+
+for (const file of files) {
+  const body = fs.readFileSync(file);
+  fs.writeFileSync(`${file}.gz`, zlib.gzipSync(body, { level: zlib.constants.Z_BEST_COMPRESSION }));
+  fs.writeFileSync(
+    `${file}.br`,
+    zlib.brotliCompressSync(body, {
+      params: {
+        [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+        [zlib.constants.BROTLI_PARAM_SIZE_HINT]: body.length,
+      },
+    })
+  );
+}
+
+console.log(`Precompressed ${files.length} files in ${buildDir}`);
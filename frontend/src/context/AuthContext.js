@@ -117,7 +117,7 @@ export const AuthProvider = ({ children }) => {
     const logout = async () => {
         try {
             // Try to logout on server, but don't wait or fail if it doesn't work
-            authAPI.logout().catch(() => {
+            authAPI.logout(localStorage.getItem('refreshToken')).catch(() => {
                 // Server logout failed, but that's okay
                 // Frontend will clear tokens anyway
             });
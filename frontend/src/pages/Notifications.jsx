@@ -13,6 +13,39 @@ function Notifications() {
         loadNotifications();
     }, []);
 
+    useEffect(() => {
+        // New notifications arrive over SSE. The stream token expires within a minute, so a dropped
+        // stream is reopened here with a fresh one rather than by the browser's own retry.
+        let stream = null;
+        let retry = null;
+        let closed = false;
+
+        const connect = async () => {
+            try {
+                stream = await postAPI.openNotificationStream();
+            } catch (error) {
+                if (!closed) retry = setTimeout(connect, 5000);
+                return;
+            }
+            if (closed) {
+                stream.close();
+                return;
+            }
+            stream.addEventListener('notification', () => loadNotifications(0));
+            stream.onerror = () => {
+                stream.close();
+                if (!closed) retry = setTimeout(connect, 3000);
+            };
+        };
+        connect();
+
+        return () => {
+            closed = true;
+            clearTimeout(retry);
+            if (stream) stream.close();
+        };
+    }, []);
+
     const loadNotifications = async (pageNum = 0) => {
         try {
             setLoading(true);
@@ -91,7 +124,7 @@ function Notifications() {
                                                 </div>
                                                 <p className="mb-0 mt-2">{notification.message}</p>
                                                 <small className="text-muted">
-                                                    {new Date(notification.createdAt).toLocaleDateString()}
+                                                    {new Date(notification.lastActivityAt || notification.createdAt).toLocaleDateString()}
                                                 </small>
                                             </div>
                                             {!notification.read && (
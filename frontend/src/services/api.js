@@ -76,7 +76,7 @@ api.interceptors.response.use(
 export const authAPI = {
   register: (data) => api.post('/auth/register', data),
   login: (data) => api.post('/auth/login', data),
-  logout: () => api.post('/auth/logout'),
+  logout: (refreshToken) => api.post('/auth/logout', { refreshToken }),
 };
 
 // User API
@@ -89,20 +89,31 @@ export const userAPI = {
 export const postAPI = {
   createPost: (data) => api.post('/posts', data),
   getFeed: (page = 0, size = 20) => api.get(`/posts/feed?page=${page}&size=${size}`),
+  getFeedByCursor: (cursor, size = 20) => api.get('/posts/feed/cursor', { params: { cursor, size } }),
   getUserPosts: (userId, page = 0, size = 20) => api.get(`/posts/user/${userId}?page=${page}&size=${size}`),
+  getUserPostsByCursor: (userId, cursor, size = 20) => api.get(`/posts/user/${userId}/cursor`, { params: { cursor, size } }),
   getPost: (postId) => api.get(`/posts/${postId}`),
   deletePost: (postId) => api.delete(`/posts/${postId}`),
   likePost: (postId) => api.post(`/posts/${postId}/like`),
   unlikePost: (postId) => api.delete(`/posts/${postId}/like`),
+  getLikedStatus: (postIds) => api.post('/posts/liked-status', postIds),
   addComment: (postId, data) => api.post(`/posts/${postId}/comments`, data),
   getComments: (postId, page = 0, size = 20) => api.get(`/posts/${postId}/comments?page=${page}&size=${size}`),
+  getCommentsByCursor: (postId, cursor, size = 20) => api.get(`/posts/${postId}/comments/cursor`, { params: { cursor, size } }),
   deleteComment: (commentId) => api.delete(`/posts/comments/${commentId}`),
   // Notification API
   getNotifications: (page = 0, size = 20) => api.get(`/notifications?page=${page}&size=${size}`),
+  getNotificationsByCursor: (cursor, size = 20) => api.get('/notifications/cursor', { params: { cursor, size } }),
   getUnreadNotifications: (page = 0, size = 20) => api.get(`/notifications/unread?page=${page}&size=${size}`),
   getUnreadCount: () => api.get('/notifications/unread-count'),
   markNotificationAsRead: (notificationId) => api.put(`/notifications/${notificationId}/read`),
   markAllNotificationsAsRead: () => api.put('/notifications/read-all'),
+  // EventSource can't send an Authorization header, so the stream is opened with a short-lived
+  // token that is only good for this endpoint
+  openNotificationStream: async () => {
+    const { data } = await api.post('/notifications/stream-token');
+    return new EventSource(`${API_URL}/notifications/stream?stream_token=${encodeURIComponent(data.token)}`);
+  },
 };
 
 // Follow API
@@ -3,9 +3,11 @@ package com.postit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoAuditing
+@EnableScheduling
 public class PostitApplication {
     public static void main(String[] args) {
         SpringApplication.run(PostitApplication.class, args);
@@ -1,12 +1,34 @@
 package com.postit.config;
 
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 
 @Configuration
 @EnableKafka
 public class KafkaConfig {
     // Kafka configuration is provided via application.txt
     // Spring Boot auto-configuration handles the rest
-}
 
+    public static final String RECORD_LISTENER_FACTORY = "recordListenerContainerFactory";
+
+    /**
+     * Per-record listeners for the redelivery and retry topics. The default factory stays a batch
+     * factory for the main topic; retry topics need one record per invocation so a failure
+     * forwards just that record to the next retry topic.
+     */
+    @Bean(RECORD_LISTENER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> recordListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(false);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+        return factory;
+    }
+}
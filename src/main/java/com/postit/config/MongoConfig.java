@@ -0,0 +1,22 @@
+package com.postit.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class MongoConfig {
+
+    // Commits a like or comment together with its outbox event (Mongo must run as a replica set).
+    // The transaction manager is deliberately not a bean: registering one would turn every
+    // @Transactional method into a Mongo transaction, including those that evict caches and fan
+    // out to Redis before they would commit.
+    @Bean
+    public TransactionTemplate outboxTransactionTemplate(MongoDatabaseFactory databaseFactory) {
+        MongoTransactionManager transactionManager = new MongoTransactionManager(databaseFactory);
+        transactionManager.afterPropertiesSet();
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -1,103 +1,165 @@
 package com.postit.config;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Serves the SPA's index.html for client-side routes. The document and its compressed variants are
+ * read once at startup, so a navigation is a memory copy or a 304. The brotli variant is used when
+ * the frontend build shipped an index.html.br next to it; the gzip variant is made here if missing.
+ */
 @Slf4j
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
 public class SpaRedirectFilter extends OncePerRequestFilter {
 
     private static final String INDEX_PATH = "/index.html";
+    private static final String INDEX_LOCATION = "classpath:/static/index.html";
 
-    @Override
-    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        String path = request.getRequestURI();
-        String method = request.getMethod();
+    private final ResourceLoader resourceLoader;
 
-        log.info("SpaRedirectFilter: incoming request {} {}", method, path);
+    // Null when the app was built without the frontend
+    private Variant identity;
+    private Variant gzip;
+    private Variant brotli;
 
-        // Only forward GET requests
-        if (!"GET".equalsIgnoreCase(method)) {
-            log.debug("SpaRedirectFilter: not a GET request, passing through: {} {}", method, path);
-            filterChain.doFilter(request, response);
+    private record Variant(byte[] body, String etag, String encoding) {
+    }
+
+    @PostConstruct
+    void loadIndex() throws IOException {
+        Resource index = resourceLoader.getResource(INDEX_LOCATION);
+        if (!index.exists()) {
+            log.warn("SpaRedirectFilter: {} not found; SPA routes will pass through", INDEX_LOCATION);
             return;
         }
 
-        // If request is for API, static resource (contains a dot), or the index itself, let it pass
-        if (path.startsWith("/api")) {
-            log.debug("SpaRedirectFilter: API path, passing through: {}", path);
-            filterChain.doFilter(request, response);
-            return;
+        byte[] body = read(index);
+        // Strong ETags, distinct per encoding as each variant is a different byte sequence
+        String hash = hash(body);
+        identity = new Variant(body, "\"" + hash + "\"", null);
+
+        Resource gzipped = resourceLoader.getResource(INDEX_LOCATION + ".gz");
+        gzip = new Variant(gzipped.exists() ? read(gzipped) : gzip(body), "\"" + hash + "-gzip\"", "gzip");
+
+        Resource brotlied = resourceLoader.getResource(INDEX_LOCATION + ".br");
+        if (brotlied.exists()) {
+            brotli = new Variant(read(brotlied), "\"" + hash + "-br\"", "br");
         }
-        if (path.equals("/") || path.equals(INDEX_PATH)) {
-            log.debug("SpaRedirectFilter: root/index path, passing through: {}", path);
+        log.info("SpaRedirectFilter: cached index.html ({} bytes, gzip {}, brotli {})", body.length,
+                gzip.body().length, brotli != null ? brotli.body().length : "unavailable");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (identity == null || !isSpaRoute(request)) {
             filterChain.doFilter(request, response);
             return;
         }
-        if (path.contains(".")) {
-            log.debug("SpaRedirectFilter: looks like a static resource (has dot), passing through: {}", path);
-            filterChain.doFilter(request, response);
+
+        log.trace("SpaRedirectFilter: serving index.html for SPA route {}", request.getRequestURI());
+        Variant variant = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.ETAG, variant.etag());
+        // The document names the current hashed bundles, so browsers must revalidate it every time
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(variant.etag()) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
             return;
         }
-        if (path.startsWith("/static") || path.startsWith("/favicon.ico") || path.startsWith("/manifest.json")
-                || path.startsWith("/robots.txt") || path.startsWith("/asset-manifest.json")) {
-            log.debug("SpaRedirectFilter: known static asset path, passing through: {}", path);
-            filterChain.doFilter(request, response);
-            return;
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/html;charset=UTF-8");
+        if (variant.encoding() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, variant.encoding());
+        }
+        response.setContentLength(variant.body().length);
+        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+            response.getOutputStream().write(variant.body());
+        }
+    }
+
+    private boolean isSpaRoute(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+            return false;
         }
 
-        // If the servlet context actually has a resource at this path, don't forward.
-        try {
-            URL existing = request.getServletContext().getResource(path);
-            if (existing != null) {
-                log.debug("SpaRedirectFilter: resource exists for {}, letting it pass ({}).", path, existing);
-                filterChain.doFilter(request, response);
-                return;
-            }
-        } catch (MalformedURLException e) {
-            // ignore and continue to serve index
-            log.debug("SpaRedirectFilter: error checking resource existence for {}: {}", path, e.getMessage());
+        String path = request.getRequestURI();
+        if (path.equals("/") || path.equals(INDEX_PATH)) {
+            return true;
         }
+        // API and actuator calls, and anything that looks like a file (the build's files all have
+        // an extension), are left to the rest of the chain
+        return !path.startsWith("/api") && !path.startsWith("/actuator") && !path.startsWith("/static")
+                && !path.contains(".");
+    }
 
-        // Serve index.html directly from the classpath to avoid forwarding/dispatch problems
-        try (InputStream indexStream = request.getServletContext().getResourceAsStream(INDEX_PATH)) {
-            if (indexStream == null) {
-                log.warn("SpaRedirectFilter: index.html not found on classpath; cannot serve {}. Passing through.", path);
-                filterChain.doFilter(request, response);
-                return;
-            }
+    private Variant negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return identity;
+        }
+        if (brotli != null && accepts(acceptEncoding, "br")) {
+            return brotli;
+        }
+        return accepts(acceptEncoding, "gzip") ? gzip : identity;
+    }
 
-            log.info("SpaRedirectFilter: serving index.html for SPA route {}", path);
-            response.setStatus(HttpServletResponse.SC_OK);
-            response.setContentType("text/html;charset=UTF-8");
-
-            // Copy bytes
-            try (OutputStream out = response.getOutputStream()) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = indexStream.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-                out.flush();
+    // True if the coding is listed without q=0
+    private static boolean accepts(String acceptEncoding, String coding) {
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase(coding)) {
+                return tokens.length == 1 || !tokens[1].replace(" ", "").matches("q=0(\\.0*)?");
             }
-            return;
-        } catch (IOException e) {
-            log.error("SpaRedirectFilter: error serving index.html for {}: {}", path, e.getMessage());
-            filterChain.doFilter(request, response);
+        }
+        return false;
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 }
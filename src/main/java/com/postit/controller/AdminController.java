@@ -0,0 +1,25 @@
+package com.postit.controller;
+
+import com.postit.kafka.DeadLetterReplayer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+
+    private final DeadLetterReplayer deadLetterReplayer;
+
+    @PostMapping("/notifications/dead-letters/replay")
+    public ResponseEntity<Map<String, Integer>> replayDeadLetters(
+            @RequestParam(defaultValue = "100") int limit) {
+        int replayed = deadLetterReplayer.replay(limit);
+        return ResponseEntity.ok(Map.of("replayed", replayed));
+    }
+}
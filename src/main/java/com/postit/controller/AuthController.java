@@ -1,6 +1,7 @@
 package com.postit.controller;
 
 import com.postit.dto.*;
+import com.postit.security.AuthenticatedUser;
 import com.postit.service.AuthService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,8 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/auth")
@@ -19,20 +22,24 @@ public class AuthController {
 
     private final AuthService authService;
 
+    // Register and login return futures so the servlet thread is released while BCrypt runs
+
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@Valid @RequestBody RegisterRequest request) {
         log.info("Register attempt for username: {}", request.getUsername());
-        AuthResponse response = authService.register(request);
-        log.info("User registered successfully: {}", request.getUsername());
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+        return authService.register(request).thenApply(response -> {
+            log.info("User registered successfully: {}", request.getUsername());
+            return new ResponseEntity<>(response, HttpStatus.CREATED);
+        });
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
         log.info("Login attempt for: {}", request.getUsernameOrEmail());
-        AuthResponse response = authService.login(request);
-        log.info("User logged in successfully: {}", request.getUsernameOrEmail());
-        return ResponseEntity.ok(response);
+        return authService.login(request).thenApply(response -> {
+            log.info("User logged in successfully: {}", request.getUsernameOrEmail());
+            return ResponseEntity.ok(response);
+        });
     }
 
     @PostMapping("/refresh")
@@ -43,9 +50,22 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Revokes the given refresh token, or with all=true every refresh token of the current user.
+     * Clients that send no refresh token (builds from before logout sent it) also revoke them all,
+     * as the token they hold can't be told apart from the user's others.
+     */
     @PostMapping("/logout")
-    public ResponseEntity<Void> logout() {
+    public ResponseEntity<Void> logout(@RequestBody(required = false) RefreshTokenRequest request,
+                                       @RequestParam(defaultValue = "false") boolean all,
+                                       @AuthenticationPrincipal AuthenticatedUser currentUser) {
         log.debug("Logout requested");
+        boolean hasToken = request != null && request.getRefreshToken() != null && !request.getRefreshToken().isBlank();
+        if (currentUser != null && (all || !hasToken)) {
+            authService.logoutEverywhere(currentUser.getId());
+        } else if (hasToken) {
+            authService.logout(request.getRefreshToken());
+        }
         return ResponseEntity.ok().build();
     }
 
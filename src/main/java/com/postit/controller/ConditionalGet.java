@@ -0,0 +1,25 @@
+package com.postit.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.function.Predicate;
+
+/**
+ * Helpers for GET endpoints that answer 304 Not Modified. When the returned predicate accepts an
+ * ETag the 304 has been written and the handler should return null.
+ */
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    static Predicate<String> notModified(ServletWebRequest webRequest) {
+        // Lets the browser keep the response and revalidate it on every use. Setting it here also
+        // stops Spring Security from adding its default no-store, which would disable revalidation.
+        if (webRequest.getResponse() != null) {
+            webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        }
+        return webRequest::checkNotModified;
+    }
+}
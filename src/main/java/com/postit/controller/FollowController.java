@@ -1,13 +1,11 @@
 package com.postit.controller;
 
 import com.postit.dto.UserProfileResponse;
-import com.postit.model.User;
+import com.postit.security.AuthenticatedUser;
 import com.postit.service.FollowService;
-import com.postit.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -20,13 +18,11 @@ import java.util.Map;
 public class FollowController {
 
     private final FollowService followService;
-    private final UserService userService;
 
     @PostMapping("/{userId}/follow")
     public ResponseEntity<Void> followUser(
             @PathVariable String userId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = userService.getUserByUsername(userDetails.getUsername());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         followService.followUser(currentUser.getId(), userId);
         return ResponseEntity.ok().build();
     }
@@ -34,8 +30,7 @@ public class FollowController {
     @DeleteMapping("/{userId}/follow")
     public ResponseEntity<Void> unfollowUser(
             @PathVariable String userId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = userService.getUserByUsername(userDetails.getUsername());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         followService.unfollowUser(currentUser.getId(), userId);
         return ResponseEntity.noContent().build();
     }
@@ -43,8 +38,7 @@ public class FollowController {
     @GetMapping("/{userId}/followers")
     public ResponseEntity<List<UserProfileResponse>> getFollowers(
             @PathVariable String userId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = userService.getUserByUsername(userDetails.getUsername());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         List<UserProfileResponse> followers = followService.getFollowers(userId, currentUser.getId());
         return ResponseEntity.ok(followers);
     }
@@ -52,8 +46,7 @@ public class FollowController {
     @GetMapping("/{userId}/following")
     public ResponseEntity<List<UserProfileResponse>> getFollowing(
             @PathVariable String userId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = userService.getUserByUsername(userDetails.getUsername());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         List<UserProfileResponse> following = followService.getFollowing(userId, currentUser.getId());
         return ResponseEntity.ok(following);
     }
@@ -61,8 +54,7 @@ public class FollowController {
     @GetMapping("/{userId}/follow-status")
     public ResponseEntity<Map<String, Boolean>> getFollowStatus(
             @PathVariable String userId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = userService.getUserByUsername(userDetails.getUsername());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         boolean isFollowing = followService.isFollowing(currentUser.getId(), userId);
 
         Map<String, Boolean> response = new HashMap<>();
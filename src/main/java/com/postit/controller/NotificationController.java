@@ -1,16 +1,22 @@
 package com.postit.controller;
 
+import com.postit.dto.CursorPage;
 import com.postit.dto.NotificationResponse;
+import com.postit.dto.StreamTokenResponse;
+import com.postit.security.AuthenticatedUser;
+import com.postit.security.JwtTokenProvider;
 import com.postit.service.NotificationService;
-import com.postit.service.UserService;
+import com.postit.service.PageCursor;
+import com.postit.service.NotificationStreamService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -18,40 +24,61 @@ import org.springframework.web.bind.annotation.*;
 public class NotificationController {
 
     private final NotificationService notificationService;
-    private final UserService userService;
+    private final NotificationStreamService notificationStreamService;
+    private final JwtTokenProvider tokenProvider;
 
     @GetMapping
     public ResponseEntity<Page<NotificationResponse>> getNotifications(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Pageable pageable = PageRequest.of(page, PageCursor.clampSize(size));
+        Page<NotificationResponse> notifications = notificationService.getUserNotifications(currentUser.getId(), pageable);
 
-        var user = userService.getUserByUsername(userDetails.getUsername());
-        Pageable pageable = PageRequest.of(page, size);
-        Page<NotificationResponse> notifications = notificationService.getUserNotifications(user.getId(), pageable);
+        return ResponseEntity.ok(notifications);
+    }
+
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<NotificationResponse>> getNotificationsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        CursorPage<NotificationResponse> notifications = notificationService.getUserNotifications(currentUser.getId(), cursor, size);
 
         return ResponseEntity.ok(notifications);
     }
 
+    // EventSource can't send headers, so the stream is opened with ?stream_token= from here
+    @PostMapping("/stream-token")
+    public ResponseEntity<StreamTokenResponse> createStreamToken(
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        return ResponseEntity.ok(StreamTokenResponse.builder()
+                .token(tokenProvider.generateStreamToken(currentUser))
+                .expiresInMs(tokenProvider.getStreamExpiration())
+                .build());
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        return notificationStreamService.open(currentUser.getId());
+    }
+
     @GetMapping("/unread")
     public ResponseEntity<Page<NotificationResponse>> getUnreadNotifications(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @AuthenticationPrincipal UserDetails userDetails) {
-
-        var user = userService.getUserByUsername(userDetails.getUsername());
-        Pageable pageable = PageRequest.of(page, size);
-        Page<NotificationResponse> notifications = notificationService.getUnreadNotifications(user.getId(), pageable);
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Pageable pageable = PageRequest.of(page, PageCursor.clampSize(size));
+        Page<NotificationResponse> notifications = notificationService.getUnreadNotifications(currentUser.getId(), pageable);
 
         return ResponseEntity.ok(notifications);
     }
 
     @GetMapping("/unread-count")
     public ResponseEntity<Long> getUnreadCount(
-            @AuthenticationPrincipal UserDetails userDetails) {
-
-        var user = userService.getUserByUsername(userDetails.getUsername());
-        long count = notificationService.getUnreadCount(user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        long count = notificationService.getUnreadCount(currentUser.getId());
 
         return ResponseEntity.ok(count);
     }
@@ -59,18 +86,16 @@ public class NotificationController {
     @PutMapping("/{notificationId}/read")
     public ResponseEntity<Void> markAsRead(
             @PathVariable String notificationId,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        notificationService.markAsRead(notificationId);
+        notificationService.markAsRead(notificationId, currentUser.getId());
         return ResponseEntity.noContent().build();
     }
 
     @PutMapping("/read-all")
     public ResponseEntity<Void> markAllAsRead(
-            @AuthenticationPrincipal UserDetails userDetails) {
-
-        var user = userService.getUserByUsername(userDetails.getUsername());
-        notificationService.markAllAsRead(user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        notificationService.markAllAsRead(currentUser.getId());
 
         return ResponseEntity.noContent().build();
     }
@@ -1,9 +1,9 @@
 package com.postit.controller;
 
 import com.postit.dto.*;
-import com.postit.model.User;
+import com.postit.security.AuthenticatedUser;
+import com.postit.service.PageCursor;
 import com.postit.service.PostService;
-import com.postit.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -12,8 +12,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/posts")
@@ -21,26 +24,41 @@ import org.springframework.web.bind.annotation.*;
 public class PostController {
 
     private final PostService postService;
-    private final UserService userService;
 
     @PostMapping
     public ResponseEntity<PostResponse> createPost(
             @Valid @RequestBody CreatePostRequest request,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        PostResponse response = postService.createPost(request, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        PostResponse response = postService.createPost(request, currentUser.getId());
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    // The first feed page and single posts answer 304 when If-None-Match still matches.
+    // A null body after checkNotModified tells Spring MVC the 304 has already been written.
+
     @GetMapping("/feed")
     public ResponseEntity<Page<PostResponse>> getFeed(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        Pageable pageable = PageRequest.of(page, size);
-        Page<PostResponse> feed = postService.getFeed(user.getId(), pageable);
-        return ResponseEntity.ok(feed);
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            ServletWebRequest webRequest) {
+        Pageable pageable = PageRequest.of(page, PageCursor.clampSize(size));
+        Page<PostResponse> feed = page == 0
+                ? postService.getFeed(currentUser.getId(), pageable, ConditionalGet.notModified(webRequest))
+                : postService.getFeed(currentUser.getId(), pageable);
+        return feed != null ? ResponseEntity.ok(feed) : null;
+    }
+
+    @GetMapping("/feed/cursor")
+    public ResponseEntity<CursorPage<PostResponse>> getFeedByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            ServletWebRequest webRequest) {
+        CursorPage<PostResponse> feed = cursor == null
+                ? postService.getFeed(currentUser.getId(), null, size, ConditionalGet.notModified(webRequest))
+                : postService.getFeed(currentUser.getId(), cursor, size);
+        return feed != null ? ResponseEntity.ok(feed) : null;
     }
 
     @GetMapping("/user/{userId}")
@@ -48,56 +66,69 @@ public class PostController {
             @PathVariable String userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        Pageable pageable = PageRequest.of(page, size);
-        Page<PostResponse> posts = postService.getUserPosts(userId, user.getId(), pageable);
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Pageable pageable = PageRequest.of(page, PageCursor.clampSize(size));
+        Page<PostResponse> posts = postService.getUserPosts(userId, currentUser.getId(), pageable);
+        return ResponseEntity.ok(posts);
+    }
+
+    @GetMapping("/user/{userId}/cursor")
+    public ResponseEntity<CursorPage<PostResponse>> getUserPostsByCursor(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        CursorPage<PostResponse> posts = postService.getUserPosts(userId, currentUser.getId(), cursor, size);
         return ResponseEntity.ok(posts);
     }
 
     @GetMapping("/{postId}")
     public ResponseEntity<PostResponse> getPost(
             @PathVariable String postId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        PostResponse post = postService.getPost(postId, user.getId());
-        return ResponseEntity.ok(post);
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            ServletWebRequest webRequest) {
+        PostResponse post = postService.getPost(postId, currentUser.getId(), ConditionalGet.notModified(webRequest));
+        return post != null ? ResponseEntity.ok(post) : null;
     }
 
     @DeleteMapping("/{postId}")
     public ResponseEntity<Void> deletePost(
             @PathVariable String postId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        postService.deletePost(postId, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        postService.deletePost(postId, currentUser.getId());
         return ResponseEntity.noContent().build();
     }
 
     @PostMapping("/{postId}/like")
     public ResponseEntity<Void> likePost(
             @PathVariable String postId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        postService.likePost(postId, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        postService.likePost(postId, currentUser.getId());
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/{postId}/like")
     public ResponseEntity<Void> unlikePost(
             @PathVariable String postId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        postService.unlikePost(postId, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        postService.unlikePost(postId, currentUser.getId());
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/liked-status")
+    public ResponseEntity<Map<String, Boolean>> getLikedStatus(
+            @RequestBody List<String> postIds,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Map<String, Boolean> status = postService.getLikedStatus(postIds, currentUser.getId());
+        return ResponseEntity.ok(status);
+    }
+
     @PostMapping("/{postId}/comments")
     public ResponseEntity<CommentResponse> addComment(
             @PathVariable String postId,
             @Valid @RequestBody CreateCommentRequest request,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        CommentResponse response = postService.addComment(postId, request, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        CommentResponse response = postService.addComment(postId, request, currentUser.getId());
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
@@ -106,20 +137,29 @@ public class PostController {
             @PathVariable String postId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        Pageable pageable = PageRequest.of(page, size);
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Pageable pageable = PageRequest.of(page, PageCursor.clampSize(size));
         Page<CommentResponse> comments = postService.getComments(postId, pageable);
         return ResponseEntity.ok(comments);
     }
 
+    @GetMapping("/{postId}/comments/cursor")
+    public ResponseEntity<CursorPage<CommentResponse>> getCommentsByCursor(
+            @PathVariable String postId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        CursorPage<CommentResponse> comments = postService.getComments(postId, cursor, size);
+        return ResponseEntity.ok(comments);
+    }
+
     // ...existing code...
 
     @DeleteMapping("/comments/{commentId}")
     public ResponseEntity<Void> deleteComment(
             @PathVariable String commentId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
-        postService.deleteComment(commentId, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        postService.deleteComment(commentId, currentUser.getId());
         return ResponseEntity.noContent().build();
     }
 }
@@ -2,14 +2,14 @@ package com.postit.controller;
 
 import com.postit.dto.UserProfileResponse;
 import com.postit.exception.ResourceNotFoundException;
-import com.postit.model.User;
+import com.postit.security.AuthenticatedUser;
 import com.postit.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @Slf4j
 @RestController
@@ -20,36 +20,37 @@ public class UserController {
     private final UserService userService;
 
     @GetMapping("/me")
-    public ResponseEntity<UserProfileResponse> getCurrentUser(@AuthenticationPrincipal UserDetails userDetails) {
-        if (userDetails == null) {
+    public ResponseEntity<UserProfileResponse> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        if (currentUser == null) {
             log.warn("getCurrentUser called with null authentication principal");
             throw new ResourceNotFoundException("User not authenticated");
         }
 
         try {
-            User user = userService.getUserByUsername(userDetails.getUsername());
-            UserProfileResponse profile = userService.getUserProfile(user.getId(), user.getId());
-            log.debug("Retrieved current user profile: {}", user.getUsername());
+            UserProfileResponse profile = userService.getUserProfile(currentUser.getId(), currentUser.getId());
+            log.debug("Retrieved current user profile: {}", currentUser.getUsername());
             return ResponseEntity.ok(profile);
         } catch (ResourceNotFoundException e) {
-            log.error("User not found: {}", userDetails.getUsername());
+            log.error("User not found: {}", currentUser.getUsername());
             throw e;
         }
     }
 
+    // Answers 304 when the If-None-Match header still matches the profile
     @GetMapping("/{username}")
     public ResponseEntity<UserProfileResponse> getUserByUsername(
             @PathVariable String username,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        if (userDetails == null) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            ServletWebRequest webRequest) {
+        if (currentUser == null) {
             log.warn("getUserByUsername called with null authentication principal");
             throw new ResourceNotFoundException("User not authenticated");
         }
 
         try {
-            User currentUser = userService.getUserByUsername(userDetails.getUsername());
-            UserProfileResponse profile = userService.getUserProfileByUsername(username, currentUser.getId());
-            return ResponseEntity.ok(profile);
+            UserProfileResponse profile = userService.getUserProfileByUsername(username, currentUser.getId(),
+                    ConditionalGet.notModified(webRequest));
+            return profile != null ? ResponseEntity.ok(profile) : null;
         } catch (ResourceNotFoundException e) {
             log.error("User not found: {}", username);
             throw e;
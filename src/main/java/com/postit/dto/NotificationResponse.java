@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -18,7 +19,10 @@ public class NotificationResponse {
     private String postId;
     private String commentId;
     private String message;
+    private long actorCount;
+    private List<String> recentActors;  // Usernames, most recent first
     private boolean read;
     private LocalDateTime createdAt;
+    private LocalDateTime lastActivityAt;
 }
 
@@ -8,7 +8,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserProfileResponse {
@@ -23,4 +23,5 @@ public class UserProfileResponse {
     private long postsCount;
     private boolean followedByCurrentUser;
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
 }
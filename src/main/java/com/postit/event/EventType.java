@@ -0,0 +1,30 @@
+package com.postit.event;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Event types published on the "postit" topic. The type travels in a record header so consumers
+ * can route records without inspecting the payload.
+ */
+public enum EventType {
+    POST_LIKED(PostLikedEvent.class),
+    POST_COMMENTED(PostCommentedEvent.class);
+
+    private final Class<?> payloadType;
+
+    EventType(Class<?> payloadType) {
+        this.payloadType = payloadType;
+    }
+
+    public Class<?> getPayloadType() {
+        return payloadType;
+    }
+
+    // Records written by the old JsonSerializer only carry the payload class name
+    public static Optional<EventType> ofPayloadClassName(String className) {
+        return Arrays.stream(values())
+                .filter(type -> type.payloadType.getName().equals(className))
+                .findFirst();
+    }
+}
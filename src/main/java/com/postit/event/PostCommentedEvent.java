@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PostCommentedEvent {
+    private String eventId;             // Stable across redeliveries: "comment:" + commentId
     private String commentId;
     private String postId;
     private String postOwnerId;
@@ -18,5 +19,10 @@ public class PostCommentedEvent {
     private String commenterUsername;
     private String commentContent;
     private LocalDateTime timestamp;
+
+    // Events published before ids were assigned fall back to the same derivation
+    public String getEventId() {
+        return eventId != null ? eventId : commentId != null ? "comment:" + commentId : null;
+    }
 }
 
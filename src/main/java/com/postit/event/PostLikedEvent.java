@@ -11,11 +11,17 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PostLikedEvent {
+    private String eventId;             // Stable across redeliveries: "like:" + likeId
     private String likeId;
     private String postId;
     private String postOwnerId;
     private String likeUserId;
     private String likerUsername;
     private LocalDateTime timestamp;
+
+    // Events published before ids were assigned fall back to the same derivation
+    public String getEventId() {
+        return eventId != null ? eventId : likeId != null ? "like:" + likeId : null;
+    }
 }
 
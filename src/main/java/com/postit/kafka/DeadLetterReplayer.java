@@ -0,0 +1,103 @@
+package com.postit.kafka;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends dead-lettered events back through the redelivery topic once the cause has been fixed.
+ * Progress is committed under its own consumer group, so each dead letter is replayed once.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeadLetterReplayer {
+
+    private static final String REPLAY_GROUP = "postit-dlt-replay";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
+    // Failure and retry bookkeeping from the previous pass; dropped so a replay starts afresh
+    private static final List<String> STALE_HEADER_PREFIXES = List.of("kafka_dlt-", "retry_topic-");
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    /**
+     * Replays up to limit dead letters, oldest first, and returns how many were replayed.
+     */
+    public synchronized int replay(int limit) {
+        int replayed = 0;
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(REPLAY_GROUP, "replay")) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(NotificationConsumer.DEAD_LETTER_TOPIC);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                return 0;
+            }
+            consumer.assign(partitionInfos.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList());
+
+            while (replayed < limit) {
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+                consumer.poll(POLL_TIMEOUT).forEach(records::add);
+                if (records.isEmpty()) {
+                    break;
+                }
+
+                Map<TopicPartition, OffsetAndMetadata> progress = new HashMap<>();
+                List<CompletableFuture<?>> sends = new ArrayList<>();
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (replayed == limit) {
+                        break;
+                    }
+                    sends.add(kafkaTemplate.send(new ProducerRecord<>(NotificationConsumer.REDELIVERY_TOPIC,
+                            null, record.key(), record.value(), freshHeaders(record))));
+                    progress.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                    replayed++;
+                }
+
+                CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                consumer.commitSync(progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying dead letters", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not replay dead letters", e);
+        }
+
+        log.info("Replayed {} dead-lettered events", replayed);
+        return replayed;
+    }
+
+    private static RecordHeaders freshHeaders(ConsumerRecord<String, byte[]> record) {
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (STALE_HEADER_PREFIXES.stream().noneMatch(header.key()::startsWith)) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+}
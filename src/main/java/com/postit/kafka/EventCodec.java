@@ -0,0 +1,166 @@
+package com.postit.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.postit.event.EventType;
+import com.postit.event.PostCommentedEvent;
+import com.postit.event.PostLikedEvent;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes events for the "postit" topic as JSON or as a compact binary layout and records both
+ * choices in headers, so consumers decode each record straight into its type.
+ * The binary layout writes the event id and then the fields in declaration order behind a version byte:
+ * strings as a presence flag plus modified UTF-8, timestamps as UTC epoch millis.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventCodec {
+
+    public static final String TYPE_HEADER = "postit-event-type";
+    public static final String ENCODING_HEADER = "postit-event-encoding";
+    // Set by the JsonSerializer that produced records before typed headers existed
+    private static final String LEGACY_TYPE_HEADER = "__TypeId__";
+
+    // Version 2 added the event id in front of the fields
+    private static final byte BINARY_VERSION = 2;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    public enum Encoding {
+        JSON,
+        BINARY
+    }
+
+    private final ObjectMapper objectMapper;
+
+    public byte[] encode(Object event, Encoding encoding) {
+        try {
+            if (encoding == Encoding.JSON) {
+                return objectMapper.writeValueAsBytes(event);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(BINARY_VERSION);
+            if (event instanceof PostLikedEvent liked) {
+                writeString(out, liked.getEventId());
+                writeString(out, liked.getLikeId());
+                writeString(out, liked.getPostId());
+                writeString(out, liked.getPostOwnerId());
+                writeString(out, liked.getLikeUserId());
+                writeString(out, liked.getLikerUsername());
+                writeTimestamp(out, liked.getTimestamp());
+            } else if (event instanceof PostCommentedEvent commented) {
+                writeString(out, commented.getEventId());
+                writeString(out, commented.getCommentId());
+                writeString(out, commented.getPostId());
+                writeString(out, commented.getPostOwnerId());
+                writeString(out, commented.getCommentUserId());
+                writeString(out, commented.getCommenterUsername());
+                writeString(out, commented.getCommentContent());
+                writeTimestamp(out, commented.getTimestamp());
+            } else {
+                throw new IllegalArgumentException("No binary encoding for " + event.getClass().getName());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode " + event.getClass().getSimpleName(), e);
+        }
+    }
+
+    public void writeHeaders(Headers headers, EventType type, Encoding encoding) {
+        headers.add(TYPE_HEADER, type.name().getBytes(StandardCharsets.UTF_8));
+        headers.add(ENCODING_HEADER, encoding.name().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the event type from the headers, falling back to the legacy JSON type header.
+     * Throws IllegalArgumentException when the record carries neither.
+     */
+    public EventType readType(Headers headers) {
+        String type = lastHeader(headers, TYPE_HEADER);
+        if (type != null) {
+            return EventType.valueOf(type);
+        }
+        String legacyType = lastHeader(headers, LEGACY_TYPE_HEADER);
+        return EventType.ofPayloadClassName(legacyType)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown event type: " + legacyType));
+    }
+
+    public Object decode(EventType type, Headers headers, byte[] payload) {
+        String encoding = lastHeader(headers, ENCODING_HEADER);
+        try {
+            if (encoding == null || Encoding.valueOf(encoding) == Encoding.JSON) {
+                return objectMapper.readValue(payload, type.getPayloadType());
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            byte version = in.readByte();
+            if (version < 1 || version > BINARY_VERSION) {
+                throw new IllegalArgumentException("Unsupported binary event version: " + version);
+            }
+            String eventId = version >= 2 ? readString(in) : null;
+            return switch (type) {
+                case POST_LIKED -> PostLikedEvent.builder()
+                        .eventId(eventId)
+                        .likeId(readString(in))
+                        .postId(readString(in))
+                        .postOwnerId(readString(in))
+                        .likeUserId(readString(in))
+                        .likerUsername(readString(in))
+                        .timestamp(readTimestamp(in))
+                        .build();
+                case POST_COMMENTED -> PostCommentedEvent.builder()
+                        .eventId(eventId)
+                        .commentId(readString(in))
+                        .postId(readString(in))
+                        .postOwnerId(readString(in))
+                        .commentUserId(readString(in))
+                        .commenterUsername(readString(in))
+                        .commentContent(readString(in))
+                        .timestamp(readTimestamp(in))
+                        .build();
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode " + type, e);
+        }
+    }
+
+    private static String lastHeader(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value != null ? value.toInstant(ZoneOffset.UTC).toEpochMilli() : NO_TIMESTAMP);
+    }
+
+    private static LocalDateTime readTimestamp(DataInputStream in) throws IOException {
+        long millis = in.readLong();
+        return millis != NO_TIMESTAMP ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+}
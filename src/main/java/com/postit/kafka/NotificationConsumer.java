@@ -1,62 +1,231 @@
 package com.postit.kafka;
 
+import com.postit.config.KafkaConfig;
+import com.postit.event.EventType;
 import com.postit.event.PostCommentedEvent;
 import com.postit.event.PostLikedEvent;
+import com.postit.model.Notification;
 import com.postit.service.NotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
 import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Turns "postit" events into notifications. The main listener splits each poll into lanes by
+ * record key (the recipient), writes the lanes in bulk on a worker pool and hands records it could
+ * not process to the redelivery topic, so a bad record never holds up its partition. Redelivered
+ * records are retried one at a time with exponential backoff through retry topics and end up in
+ * the dead-letter topic, with the failure in its headers.
+ * <p>
+ * A record sent for redelivery loses its order relative to later records with the same key, which
+ * the main listener keeps processing meanwhile. A recipient can therefore see, for example, a
+ * comment notification before the like that preceded it.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 @ConditionalOnProperty(name = "kafka.enabled", havingValue = "true", matchIfMissing = true)
 public class NotificationConsumer {
 
+    public static final String REDELIVERY_TOPIC = "postit-redelivery";
+    public static final String DEAD_LETTER_TOPIC = REDELIVERY_TOPIC + "-dlt";
+
+    private static final long REDELIVERY_SEND_TIMEOUT_SECONDS = 30;
+
     private final NotificationService notificationService;
+    private final EventCodec eventCodec;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notifications.consumer.worker-threads:4}")
+    private int workerThreads;
+
+    private ExecutorService workers;
+
+    // Notifications written by a lane and the poll positions of its records to redeliver
+    private record LaneResult(int notifications, List<Integer> redeliver) {
+    }
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newFixedThreadPool(workerThreads, new CustomizableThreadFactory("notification-worker-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
 
     @KafkaListener(topics = "postit", groupId = "postit-group")
-    public void handlePostLiked(
-            @Payload PostLikedEvent event,
-            Acknowledgment acknowledgment,
-            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-            @Header("kafka_receivedPartitionId") int partition,
-            @Header(KafkaHeaders.OFFSET) long offset) {
+    public void handleEvents(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        Collection<List<Integer>> lanes = laneRecords(records);
+        List<LaneResult> results;
+        if (lanes.size() == 1) {
+            results = List.of(processLaneOrRedeliver(records, lanes.iterator().next()));
+        } else {
+            List<CompletableFuture<LaneResult>> futures = lanes.stream()
+                .map(lane -> CompletableFuture.supplyAsync(() -> processLaneOrRedeliver(records, lane), workers))
+                .toList();
+            // Lanes turn their own failures into redeliveries, so one failing lane can't discard
+            // the results of the others
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            results = futures.stream().map(CompletableFuture::join).toList();
+        }
+
+        List<Integer> redeliver = new ArrayList<>();
+        int notifications = 0;
+        for (LaneResult result : results) {
+            redeliver.addAll(result.redeliver());
+            notifications += result.notifications();
+        }
+        if (!redeliver.isEmpty()) {
+            redeliver(records, redeliver);
+        }
+
+        acknowledgment.acknowledge();
+        log.info("Processed {} events in {} lanes into {} notifications, {} sent for redelivery",
+            records.size(), lanes.size(), notifications, redeliver.size());
+    }
+
+    @RetryableTopic(
+        attempts = "${notifications.retry.attempts:4}",
+        backoff = @Backoff(
+            delayExpression = "${notifications.retry.initial-delay-ms:1000}",
+            multiplierExpression = "${notifications.retry.multiplier:4}",
+            maxDelayExpression = "${notifications.retry.max-delay-ms:60000}"),
+        kafkaTemplate = "kafkaTemplate",
+        listenerContainerFactory = KafkaConfig.RECORD_LISTENER_FACTORY)
+    @KafkaListener(topics = REDELIVERY_TOPIC, groupId = "postit-redelivery-group",
+        containerFactory = KafkaConfig.RECORD_LISTENER_FACTORY)
+    public void handleRedelivery(ConsumerRecord<String, byte[]> record) {
+        // Undecodable records throw MessageConversionException, which is not retried and goes
+        // straight to the dead-letter topic
+        Notification notification = toNotification(record);
+        if (notification != null && !notificationService.saveAll(List.of(notification)).isEmpty()) {
+            throw new IllegalStateException("Could not write notification for record at offset " + record.offset());
+        }
+    }
+
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, byte[]> record,
+                                 @Header(name = KafkaHeaders.DLT_EXCEPTION_MESSAGE, required = false) String error) {
+        meterRegistry.counter("notifications.dead-letters").increment();
+        log.error("Event dead-lettered [partition: {}, offset: {}]: {}", record.partition(), record.offset(), error);
+    }
+
+    // Splits the poll into lanes by record key, keeping poll order within each lane. Records are
+    // keyed by recipient, so one recipient's events are always handled in order by one worker.
+    private Collection<List<Integer>> laneRecords(List<ConsumerRecord<String, byte[]>> records) {
+        Map<Integer, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            int lane = Math.floorMod(Objects.hashCode(records.get(i).key()), workerThreads);
+            lanes.computeIfAbsent(lane, l -> new ArrayList<>()).add(i);
+        }
+        return lanes.values();
+    }
+
+    // A lane that fails as a whole (e.g. Mongo unreachable) sends all its records for redelivery.
+    // Writes are idempotent, so records the lane did write before failing are skipped there.
+    private LaneResult processLaneOrRedeliver(List<ConsumerRecord<String, byte[]>> records, List<Integer> lane) {
         try {
-            log.info("Received POST_LIKED event for post: {} [topic: {}, partition: {}, offset: {}]",
-                event.getPostId(), topic, partition, offset);
-            notificationService.createLikeNotification(event);
-            acknowledgment.acknowledge();
-            log.info("Successfully processed and acknowledged POST_LIKED event");
-        } catch (Exception e) {
-            log.error("Error processing POST_LIKED event", e);
-            // Don't acknowledge on error - will be retried
+            return processLane(records, lane);
+        } catch (RuntimeException e) {
+            log.warn("Lane of {} records failed, sending them for redelivery", lane.size(), e);
+            return new LaneResult(0, lane);
         }
     }
 
-    @KafkaListener(topics = "postit", groupId = "postit-group")
-    public void handlePostCommented(
-            @Payload PostCommentedEvent event,
-            Acknowledgment acknowledgment,
-            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-            @Header("kafka_receivedPartitionId") int partition,
-            @Header(KafkaHeaders.OFFSET) long offset) {
+    private LaneResult processLane(List<ConsumerRecord<String, byte[]>> records, List<Integer> lane) {
+        List<Notification> notifications = new ArrayList<>(lane.size());
+        // Position in the poll of the record each notification came from
+        List<Integer> recordIndexes = new ArrayList<>(lane.size());
+        List<Integer> redeliver = new ArrayList<>();
+
+        for (int i : lane) {
+            try {
+                Notification notification = toNotification(records.get(i));
+                if (notification != null) {
+                    notifications.add(notification);
+                    recordIndexes.add(i);
+                }
+            } catch (MessageConversionException e) {
+                log.warn("Undecodable event at partition {} offset {}: {}",
+                    records.get(i).partition(), records.get(i).offset(), e.getMessage());
+                redeliver.add(i);
+            }
+        }
+
+        notificationService.saveAll(notifications).forEach(failed -> redeliver.add(recordIndexes.get(failed)));
+        return new LaneResult(notifications.size(), redeliver);
+    }
+
+    // Waits for the redelivery topic to take the records; if it can't, falls back to redelivering
+    // the poll from the first failed record
+    private void redeliver(List<ConsumerRecord<String, byte[]>> records, List<Integer> indexes) {
+        List<CompletableFuture<?>> sends = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            ConsumerRecord<String, byte[]> record = records.get(index);
+            sends.add(kafkaTemplate.send(new ProducerRecord<>(
+                REDELIVERY_TOPIC, null, record.key(), record.value(), record.headers())));
+        }
+
         try {
-            log.info("Received POST_COMMENTED event for post: {} [topic: {}, partition: {}, offset: {}]",
-                event.getPostId(), topic, partition, offset);
-            notificationService.createCommentNotification(event);
-            acknowledgment.acknowledge();
-            log.info("Successfully processed and acknowledged POST_COMMENTED event");
-        } catch (Exception e) {
-            log.error("Error processing POST_COMMENTED event", e);
-            // Don't acknowledge on error - will be retried
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]))
+                .get(REDELIVERY_SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new BatchListenerFailedException("Could not hand records to " + REDELIVERY_TOPIC, e,
+                indexes.stream().min(Integer::compare).orElseThrow());
         }
     }
-}
 
+    // Routes on the event-type header. Returns null for events that produce no notification.
+    private Notification toNotification(ConsumerRecord<String, byte[]> record) {
+        EventType type;
+        Object event;
+        try {
+            type = eventCodec.readType(record.headers());
+            event = eventCodec.decode(type, record.headers(), record.value());
+        } catch (RuntimeException e) {
+            throw new MessageConversionException("Undecodable event: " + e.getMessage(), e);
+        }
+
+        return switch (type) {
+            case POST_LIKED -> notificationService.buildLikeNotification((PostLikedEvent) event);
+            case POST_COMMENTED -> notificationService.buildCommentNotification((PostCommentedEvent) event);
+        };
+    }
+}
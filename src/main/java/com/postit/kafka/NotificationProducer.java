@@ -1,29 +1,49 @@
 package com.postit.kafka;
 
+import com.postit.event.EventType;
 import com.postit.event.PostCommentedEvent;
 import com.postit.event.PostLikedEvent;
+import com.postit.model.OutboxEvent;
+import com.postit.repository.OutboxEventRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Records events in the outbox instead of sending them inline, so a slow or unavailable broker
+ * never adds to request latency or loses the event. Callers record them inside the transaction
+ * that writes the like or comment. {@link OutboxRelay} publishes them. Events are keyed by the
+ * notification recipient, so each recipient's events land on one partition; the relay does not
+ * guarantee they are published in the order they were recorded.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class NotificationProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventCodec eventCodec;
 
-    private static final String POSTIT_TOPIC = "postit";
+    @Value("${kafka.events.encoding:JSON}")
+    private EventCodec.Encoding encoding;
 
     public void publishPostLiked(PostLikedEvent event) {
-        log.info("Publishing POST_LIKED event for post: {}", event.getPostId());
-        kafkaTemplate.send(POSTIT_TOPIC, "post-liked:" + event.getPostId(), event);
+        log.debug("Queueing POST_LIKED event for post: {}", event.getPostId());
+        enqueue(EventType.POST_LIKED, event.getPostOwnerId(), event);
     }
 
     public void publishPostCommented(PostCommentedEvent event) {
-        log.info("Publishing POST_COMMENTED event for post: {}", event.getPostId());
-        kafkaTemplate.send(POSTIT_TOPIC, "post-commented:" + event.getPostId(), event);
+        log.debug("Queueing POST_COMMENTED event for post: {}", event.getPostId());
+        enqueue(EventType.POST_COMMENTED, event.getPostOwnerId(), event);
     }
-}
 
+    private void enqueue(EventType type, String key, Object event) {
+        outboxEventRepository.insert(OutboxEvent.builder()
+                .type(type)
+                .key(key)
+                .encoding(encoding.name())
+                .payload(eventCodec.encode(event, encoding))
+                .build());
+    }
+}
@@ -0,0 +1,137 @@
+package com.postit.kafka;
+
+import com.postit.model.OutboxEvent;
+import com.postit.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes outbox events to Kafka in batches. A whole batch is handed to the producer at once so
+ * linger, batching and compression take effect, then the events that were acknowledged are marked
+ * published. Unacknowledged events stay pending and are picked up again once their lease expires,
+ * so delivery is at least once.
+ *
+ * <p>Order per key is best effort, not guaranteed. Within a batch, once an event fails, later
+ * events with the same key are neither sent nor marked published. Across batches nothing holds
+ * a key back: relays on several instances publish consecutive batches concurrently, and a failed
+ * event stays leased while the next run publishes newer events of its key. Consumers must not
+ * depend on order between events.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private static final String POSTIT_TOPIC = "postit";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final EventCodec eventCodec;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.lease-seconds:30}")
+    private long leaseSeconds;
+
+    private Timer publishLag;
+
+    @PostConstruct
+    void init() {
+        publishLag = Timer.builder("outbox.publish.lag")
+                .description("Time from an event being recorded to its publication being acknowledged")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("outbox.depth", outboxEventRepository,
+                repository -> repository.countByStatus(OutboxEvent.Status.PENDING));
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relay() {
+        try {
+            // Keep draining while batches come back full, but back off to the next run on any failure
+            List<OutboxEvent> batch;
+            boolean allPublished;
+            do {
+                batch = outboxEventRepository.claimBatch(batchSize, Duration.ofSeconds(leaseSeconds));
+                allPublished = publish(batch);
+            } while (allPublished && batch.size() == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay failed", e);
+        }
+    }
+
+    private boolean publish(List<OutboxEvent> batch) throws InterruptedException {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        // Keys with a failed event in this batch; the batch is in creation order, so this keeps
+        // their later events in the batch from overtaking it
+        Set<String> failedKeys = new HashSet<>();
+        // Null where the event was not sent
+        List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            if (failedKeys.contains(event.getKey())) {
+                sends.add(null);
+                continue;
+            }
+            ProducerRecord<String, byte[]> record = new ProducerRecord<>(POSTIT_TOPIC, event.getKey(), event.getPayload());
+            eventCodec.writeHeaders(record.headers(), event.getType(), EventCodec.Encoding.valueOf(event.getEncoding()));
+            try {
+                sends.add(kafkaTemplate.send(record));
+            } catch (RuntimeException e) {
+                log.warn("Could not send outbox event {}, will retry: {}", event.getId(), e.getMessage());
+                failedKeys.add(event.getKey());
+                sends.add(null);
+            }
+        }
+        kafkaTemplate.flush();
+
+        List<String> published = new ArrayList<>(batch.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            // A later event may have been acknowledged before an earlier one of its key failed.
+            // Leaving it pending republishes it after the earlier one; consumers drop the duplicate.
+            if (sends.get(i) == null || failedKeys.contains(event.getKey())) {
+                continue;
+            }
+            try {
+                sends.get(i).get(leaseSeconds, TimeUnit.SECONDS);
+                published.add(event.getId());
+                if (event.getCreatedAt() != null) {
+                    publishLag.record(Duration.between(event.getCreatedAt(), now));
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Could not publish outbox event {}, will retry: {}", event.getId(), e.getMessage());
+                failedKeys.add(event.getKey());
+            }
+        }
+
+        outboxEventRepository.markPublished(published);
+        log.debug("Published {} of {} outbox events", published.size(), batch.size());
+        return published.size() == batch.size();
+    }
+}
@@ -6,21 +6,36 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "notifications")
+@CompoundIndexes({
+    @CompoundIndex(name = "user_created_id_idx", def = "{'userId': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "user_read_created_idx", def = "{'userId': 1, 'read': 1, 'createdAt': -1}"),
+    // One coalesced notification per group; upserts from racing consumers collide here instead of duplicating
+    @CompoundIndex(name = "user_group_idx", def = "{'userId': 1, 'groupKey': 1}", unique = true,
+        partialFilter = "{ 'groupKey': { $exists: true } }")
+})
 public class Notification {
 
     @Id
     private String id;
 
+    // Id of the event that caused this notification; unique so redelivered events can't duplicate it.
+    // Not set on coalesced notifications, which count each actor once instead.
+    @Indexed(unique = true, sparse = true)
+    private String eventId;
+
     @Indexed
     private String userId;                 // Who receives the notification
 
@@ -34,12 +49,32 @@ public class Notification {
 
     private String message;
 
+    // Coalesced LIKE notifications: one document per (recipient, post, time window)
+    private String groupKey;
+
+    // Distinct actors of a coalesced notification, each recorded once as a NotificationActor
+    @Builder.Default
+    private long actorCount = 1;
+
+    private List<Actor> recentActors;      // Latest actors of a coalesced notification, oldest first
+
     @Builder.Default
     private boolean read = false;
 
+    // Set once, so keyset pages stay stable while a coalesced notification keeps collecting actors
     @CreatedDate
     private LocalDateTime createdAt;
 
+    private LocalDateTime lastActivityAt;  // Latest actor of a coalesced notification
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Actor {
+        private String userId;
+        private String username;
+    }
+
     public enum NotificationType {
         LIKE,
         COMMENT,
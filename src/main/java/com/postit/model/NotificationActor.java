@@ -0,0 +1,38 @@
+package com.postit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records that an actor was counted in a coalesced notification. Kept apart from the notification
+ * so that document stays a fixed size however many actors a viral post collects.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "notification_actors")
+@CompoundIndex(name = "user_group_actor_idx", def = "{'userId': 1, 'groupKey': 1, 'actorId': 1}", unique = true)
+public class NotificationActor {
+
+    @Id
+    private String id;
+
+    private String userId;                 // Recipient of the coalesced notification
+
+    private String groupKey;
+
+    private String actorId;
+
+    // Groups stop collecting actors once their window has passed, bar late redeliveries
+    @Indexed(name = "created_ttl_idx", expireAfter = "7d")
+    private LocalDateTime createdAt;
+}
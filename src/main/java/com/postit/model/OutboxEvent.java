@@ -0,0 +1,58 @@
+package com.postit.model;
+
+import com.postit.event.EventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * An event waiting to be published to Kafka. Written in the same transaction as the like or
+ * comment that caused it and published asynchronously by the outbox relay.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "outbox_events")
+@CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1}")
+public class OutboxEvent {
+
+    @Id
+    private String id;
+
+    private EventType type;
+
+    private String key;                    // Kafka record key
+
+    private String encoding;               // EventCodec encoding of the payload
+
+    private byte[] payload;
+
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Indexed
+    private String claimToken;             // Set by the relay instance currently publishing this event
+
+    private LocalDateTime claimedUntil;    // Other relays may take the event over after this
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    // Published events are kept for a day for inspection, then removed by Mongo
+    @Indexed(name = "published_ttl_idx", expireAfter = "1d")
+    private LocalDateTime publishedAt;
+
+    public enum Status {
+        PENDING,
+        PUBLISHED
+    }
+}
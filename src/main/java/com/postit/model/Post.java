@@ -20,7 +20,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "posts")
-@CompoundIndex(name = "user_created_idx", def = "{'userId': 1, 'createdAt': -1}")
+@CompoundIndex(name = "user_created_id_idx", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
 public class Post {
     
     @Id
@@ -1,34 +0,0 @@
-package com.postit.model;
-
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
-import org.springframework.data.mongodb.core.mapping.Document;
-
-import java.time.LocalDateTime;
-
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
-@Document(collection = "refresh_tokens")
-public class RefreshToken {
-    
-    @Id
-    private String id;
-    
-    @Indexed
-    private String userId;
-    
-    @Indexed(unique = true)
-    private String token;
-    
-    private LocalDateTime expiryDate;
-    
-    public boolean isExpired() {
-        return LocalDateTime.now().isAfter(expiryDate);
-    }
-}
@@ -48,6 +48,16 @@ public class User {
     @Builder.Default
     private boolean enabled = true;
     
+    // Denormalized profile counters, kept current with atomic $inc updates
+    @Builder.Default
+    private long followersCount = 0;
+    
+    @Builder.Default
+    private long followingCount = 0;
+    
+    @Builder.Default
+    private long postsCount = 0;
+    
     @CreatedDate
     private LocalDateTime createdAt;
     
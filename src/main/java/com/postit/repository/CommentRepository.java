@@ -1,17 +1,27 @@
 package com.postit.repository;
 
 import com.postit.model.Comment;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
-public interface CommentRepository extends MongoRepository<Comment, String> {
+public interface CommentRepository extends MongoRepository<Comment, String>, CommentRepositoryCustom {
     
     Page<Comment> findByPostIdAndIsDeletedFalseOrderByCreatedAtDesc(String postId, Pageable pageable);
     
     long countByPostIdAndIsDeletedFalse(String postId);
     
+    List<Comment> findByPostIdAndIsDeletedFalse(String postId, Pageable pageable);
+    
+    @Query("{ 'postId': ?0, 'isDeleted': false, $or: [ { 'createdAt': { $lt: ?1 } }, { 'createdAt': ?1, '_id': { $lt: ?2 } } ] }")
+    List<Comment> findByPostIdAndIsDeletedFalseBefore(String postId, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+    
     Page<Comment> findByUserIdAndIsDeletedFalseOrderByCreatedAtDesc(String userId, Pageable pageable);
 }
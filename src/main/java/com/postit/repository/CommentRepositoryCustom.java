@@ -0,0 +1,7 @@
+package com.postit.repository;
+
+public interface CommentRepositoryCustom {
+
+    // Flips isDeleted in place; returns false if the comment was already deleted
+    boolean softDelete(String commentId);
+}
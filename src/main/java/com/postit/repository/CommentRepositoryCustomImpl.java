@@ -0,0 +1,25 @@
+package com.postit.repository;
+
+import com.postit.model.Comment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class CommentRepositoryCustomImpl implements CommentRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean softDelete(String commentId) {
+        Query query = Query.query(Criteria.where("id").is(commentId).and("isDeleted").is(false));
+        Update update = new Update()
+                .set("isDeleted", true)
+                .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateFirst(query, update, Comment.class).getModifiedCount() > 0;
+    }
+}
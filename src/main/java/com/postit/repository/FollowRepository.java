@@ -22,5 +22,5 @@ public interface FollowRepository extends MongoRepository<Follow, String> {
     
     long countByFollowingId(String followingId);  // Followers count
     
-    void deleteByFollowerIdAndFollowingId(String followerId, String followingId);
+    long deleteByFollowerIdAndFollowingId(String followerId, String followingId);
 }
@@ -2,8 +2,10 @@ package com.postit.repository;
 
 import com.postit.model.Like;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,7 +18,14 @@ public interface LikeRepository extends MongoRepository<Like, String> {
     
     boolean existsByPostIdAndUserId(String postId, String userId);
     
+    // Which of the given posts the user has liked, answered in one query per page
+    @Query(value = "{ 'userId': ?0, 'postId': { $in: ?1 } }", fields = "{ 'postId': 1 }")
+    List<Like> findPostIdsByUserIdAndPostIdIn(String userId, Collection<String> postIds);
+    
+    @Query(value = "{ 'userId': ?0 }", fields = "{ 'postId': 1 }")
+    List<Like> findPostIdsByUserId(String userId);
+    
     long countByPostId(String postId);
     
-    void deleteByPostIdAndUserId(String postId, String userId);
+    long deleteByPostIdAndUserId(String postId, String userId);
 }
@@ -1,17 +1,28 @@
 package com.postit.repository;
 
 import com.postit.model.Notification;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
-public interface NotificationRepository extends MongoRepository<Notification, String> {
+public interface NotificationRepository extends MongoRepository<Notification, String>, NotificationRepositoryCustom {
 
     // Get all notifications for a user
     Page<Notification> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
 
+    // Keyset pages of a user's notifications, newest first
+    List<Notification> findByUserId(String userId, Pageable pageable);
+
+    @Query("{ 'userId': ?0, $or: [ { 'createdAt': { $lt: ?1 } }, { 'createdAt': ?1, '_id': { $lt: ?2 } } ] }")
+    List<Notification> findByUserIdBefore(String userId, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+
     // Get unread notifications for a user
     Page<Notification> findByUserIdAndReadFalseOrderByCreatedAtDesc(String userId, Pageable pageable);
 
@@ -0,0 +1,23 @@
+package com.postit.repository;
+
+import com.postit.model.Notification;
+
+import java.util.List;
+
+public interface NotificationRepositoryCustom {
+
+    // Writes all notifications in one unordered bulk. Plain notifications are inserted; those with
+    // a groupKey are upserted into their coalesced document, counting the sender once per group and
+    // keeping the latest recentActorLimit actors.
+    WriteResult writeAll(List<Notification> notifications, int recentActorLimit);
+
+    // Marks one of the user's notifications read; false if it is not theirs or was already read
+    boolean markRead(String notificationId, String userId);
+
+    // Marks all of the user's unread notifications read in one update; returns how many changed
+    long markAllRead(String userId);
+
+    // Indexes that failed, and indexes already written: inserts by event id, upserts by actor
+    record WriteResult(List<Integer> failed, List<Integer> duplicates) {
+    }
+}
@@ -0,0 +1,179 @@
+package com.postit.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.postit.model.Notification;
+import com.postit.model.NotificationActor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+@Slf4j
+@RequiredArgsConstructor
+public class NotificationRepositoryCustomImpl implements NotificationRepositoryCustom {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public WriteResult writeAll(List<Notification> notifications, int recentActorLimit) {
+        if (notifications.isEmpty()) {
+            return new WriteResult(List.of(), List.of());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> failed = new ArrayList<>();
+        List<Integer> duplicates = new ArrayList<>();
+        List<Integer> grouped = IntStream.range(0, notifications.size())
+                .filter(i -> notifications.get(i).getGroupKey() != null)
+                .boxed()
+                .toList();
+        Set<Integer> newActors = claimActors(notifications, grouped, now, failed, duplicates);
+
+        List<Integer> writes = IntStream.range(0, notifications.size())
+                .filter(i -> notifications.get(i).getGroupKey() == null || newActors.contains(i))
+                .boxed()
+                .toList();
+        List<Integer> collided = execute(notifications, writes, recentActorLimit, now, failed, duplicates);
+        // A colliding upsert lost the race to create its group, which exists by the time it is retried
+        if (!collided.isEmpty()) {
+            failed.addAll(execute(notifications, collided, recentActorLimit, now, failed, duplicates));
+        }
+        releaseActors(notifications, newActors.stream().filter(failed::contains).toList());
+        failed.sort(null);
+        return new WriteResult(failed, duplicates);
+    }
+
+    // Records each grouped notification's sender against its group and returns the indexes of
+    // senders that were new to their group; the rest are duplicates, or failed
+    private Set<Integer> claimActors(List<Notification> notifications, List<Integer> indexes, LocalDateTime now,
+                                      List<Integer> failed, List<Integer> duplicates) {
+        if (indexes.isEmpty()) {
+            return Set.of();
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NotificationActor.class);
+        for (int i : indexes) {
+            Notification notification = notifications.get(i);
+            bulk.insert(NotificationActor.builder()
+                    .userId(notification.getUserId())
+                    .groupKey(notification.getGroupKey())
+                    .actorId(notification.getSenderId())
+                    .createdAt(now)
+                    .build());
+        }
+
+        Set<Integer> claimed = new HashSet<>(indexes);
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                int index = indexes.get(error.getIndex());
+                (error.getCode() == DUPLICATE_KEY ? duplicates : failed).add(index);
+                claimed.remove(index);
+            }
+        }
+        return claimed;
+    }
+
+    // Drops the claims of senders whose notification failed, so the retry counts them again. If this
+    // fails as well, those senders are left out of actorCount.
+    private void releaseActors(List<Notification> notifications, List<Integer> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        List<Criteria> claims = indexes.stream()
+                .map(notifications::get)
+                .map(notification -> Criteria.where("userId").is(notification.getUserId())
+                        .and("groupKey").is(notification.getGroupKey())
+                        .and("actorId").is(notification.getSenderId()))
+                .toList();
+        try {
+            mongoTemplate.remove(Query.query(new Criteria().orOperator(claims)), NotificationActor.class);
+        } catch (DataAccessException e) {
+            log.warn("Could not release {} notification actor claims: {}", indexes.size(), e.getMessage());
+        }
+    }
+
+    // Runs the given notifications in one unordered bulk and returns the indexes of upserts that hit
+    // the group's unique key
+    private List<Integer> execute(List<Notification> notifications, List<Integer> indexes, int recentActorLimit,
+                                  LocalDateTime now, List<Integer> failed, List<Integer> duplicates) {
+        if (indexes.isEmpty()) {
+            return List.of();
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class);
+        for (int i : indexes) {
+            Notification notification = notifications.get(i);
+            if (notification.getGroupKey() == null) {
+                bulk.insert(notification);
+            } else {
+                Query group = Query.query(Criteria.where("userId").is(notification.getUserId())
+                        .and("groupKey").is(notification.getGroupKey()));
+                bulk.upsert(group, coalesce(notification, recentActorLimit, now));
+            }
+        }
+
+        List<Integer> collided = new ArrayList<>();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // A duplicate insert was already written (its event id is unique)
+            for (BulkWriteError error : e.getErrors()) {
+                int index = indexes.get(error.getIndex());
+                if (error.getCode() != DUPLICATE_KEY) {
+                    failed.add(index);
+                } else {
+                    (notifications.get(index).getGroupKey() == null ? duplicates : collided).add(index);
+                }
+            }
+        }
+        return collided;
+    }
+
+    @Override
+    public boolean markRead(String notificationId, String userId) {
+        Query query = Query.query(Criteria.where("id").is(notificationId)
+                .and("userId").is(userId)
+                .and("read").is(false));
+        return mongoTemplate.updateFirst(query, Update.update("read", true), Notification.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public long markAllRead(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("read").is(false));
+        return mongoTemplate.updateMulti(query, Update.update("read", true), Notification.class).getModifiedCount();
+    }
+
+    // Adds an actor that claimActors found new to the group and marks it unread again. createdAt is kept from the first like
+    // so the group doesn't move between keyset pages.
+    private Update coalesce(Notification notification, int recentActorLimit, LocalDateTime now) {
+        Update update = new Update()
+                .setOnInsert("type", notification.getType())
+                .setOnInsert("postId", notification.getPostId())
+                .setOnInsert("createdAt", now)
+                .set("senderId", notification.getSenderId())
+                .set("senderUsername", notification.getSenderUsername())
+                .set("message", notification.getMessage())
+                .set("read", false)
+                .set("lastActivityAt", now)
+                .inc("actorCount", 1);
+        update.push("recentActors").slice(-recentActorLimit).each(notification.getRecentActors().toArray());
+        return update;
+    }
+}
@@ -0,0 +1,11 @@
+package com.postit.repository;
+
+import com.postit.model.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String>, OutboxEventRepositoryCustom {
+
+    long countByStatus(OutboxEvent.Status status);
+}
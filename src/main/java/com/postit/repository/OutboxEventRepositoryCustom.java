@@ -0,0 +1,15 @@
+package com.postit.repository;
+
+import com.postit.model.OutboxEvent;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepositoryCustom {
+
+    // Leases up to limit of the oldest pending events that no other relay holds, in creation order
+    List<OutboxEvent> claimBatch(int limit, Duration lease);
+
+    void markPublished(Collection<String> ids);
+}
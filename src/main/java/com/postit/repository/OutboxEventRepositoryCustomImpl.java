@@ -0,0 +1,71 @@
+package com.postit.repository;
+
+import com.postit.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class OutboxEventRepositoryCustomImpl implements OutboxEventRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<OutboxEvent> claimBatch(int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+
+        Query candidates = Query.query(claimable(now))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(limit);
+        candidates.fields().include("id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Re-checking availability in the update makes concurrent relays split the candidates
+        String claimToken = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(ids).andOperator(claimable(now))),
+                new Update().set("claimToken", claimToken).set("claimedUntil", now.plus(lease)),
+                OutboxEvent.class);
+
+        Query claimed = Query.query(Criteria.where("claimToken").is(claimToken))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        return mongoTemplate.find(claimed, OutboxEvent.class);
+    }
+
+    @Override
+    public void markPublished(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(ids)),
+                new Update()
+                        .set("status", OutboxEvent.Status.PUBLISHED)
+                        .set("publishedAt", LocalDateTime.now())
+                        .unset("claimToken")
+                        .unset("claimedUntil"),
+                OutboxEvent.class);
+    }
+
+    private Criteria claimable(LocalDateTime now) {
+        return Criteria.where("status").is(OutboxEvent.Status.PENDING)
+                .orOperator(
+                        Criteria.where("claimedUntil").exists(false),
+                        Criteria.where("claimedUntil").lt(now));
+    }
+}
@@ -1,16 +1,19 @@
 package com.postit.repository;
 
 import com.postit.model.Post;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface PostRepository extends MongoRepository<Post, String> {
+public interface PostRepository extends MongoRepository<Post, String>, PostRepositoryCustom {
     
     Page<Post> findByUserIdAndIsDeletedFalseOrderByCreatedAtDesc(String userId, Pageable pageable);
     
@@ -20,4 +23,26 @@ public interface PostRepository extends MongoRepository<Post, String> {
     Page<Post> findByUserIdInAndIsDeletedFalseOrderByCreatedAtDesc(List<String> userIds, Pageable pageable);
     
     long countByUserIdAndIsDeletedFalse(String userId);
+    
+    // Only id and createdAt are needed to (re)build a home timeline
+    @Query(value = "{ 'userId': { $in: ?0 }, 'isDeleted': false }", fields = "{ '_id': 1, 'createdAt': 1 }")
+    List<Post> findTimelineEntriesByUserIdIn(Collection<String> userIds, Pageable pageable);
+    
+    @Query(value = "{ 'userId': { $in: ?0 }, 'isDeleted': false, 'createdAt': { $gt: ?1 } }", fields = "{ '_id': 1, 'createdAt': 1 }")
+    List<Post> findTimelineEntriesByUserIdInAndCreatedAtAfter(Collection<String> userIds, LocalDateTime since, Pageable pageable);
+    
+    @Query(value = "{ 'userId': { $in: ?0 }, 'isDeleted': false, 'createdAt': { $gt: ?1 }, $or: [ { 'createdAt': { $lt: ?2 } }, { 'createdAt': ?2, '_id': { $lt: ?3 } } ] }", fields = "{ '_id': 1, 'createdAt': 1 }")
+    List<Post> findTimelineEntriesBefore(Collection<String> userIds, LocalDateTime since, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+    
+    // Keyset pagination: the first page uses the plain finders, later pages continue
+    // strictly after the (createdAt, id) of the last item returned
+    List<Post> findByUserIdAndIsDeletedFalse(String userId, Pageable pageable);
+    
+    @Query("{ 'userId': ?0, 'isDeleted': false, $or: [ { 'createdAt': { $lt: ?1 } }, { 'createdAt': ?1, '_id': { $lt: ?2 } } ] }")
+    List<Post> findByUserIdAndIsDeletedFalseBefore(String userId, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+    
+    List<Post> findByUserIdInAndIsDeletedFalse(Collection<String> userIds, Pageable pageable);
+    
+    @Query("{ 'userId': { $in: ?0 }, 'isDeleted': false, $or: [ { 'createdAt': { $lt: ?1 } }, { 'createdAt': ?1, '_id': { $lt: ?2 } } ] }")
+    List<Post> findByUserIdInAndIsDeletedFalseBefore(Collection<String> userIds, LocalDateTime createdAt, ObjectId id, Pageable pageable);
 }
@@ -0,0 +1,17 @@
+package com.postit.repository;
+
+import java.util.List;
+import java.util.Map;
+
+public interface PostRepositoryCustom {
+
+    // Atomic $inc updates, so concurrent likes and comments never overwrite each other's counts
+    void incrementCommentCount(String postId, long delta);
+
+    // Flips isDeleted in place; returns false if the post was already deleted
+    boolean softDelete(String postId);
+
+    // Applies many like-count deltas in one unordered bulk write and returns the ids of posts whose
+    // update failed; the others are applied even when some fail
+    List<String> incrementLikeCounts(Map<String, Long> deltas);
+}
@@ -0,0 +1,64 @@
+package com.postit.repository;
+
+import com.postit.model.Post;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class PostRepositoryCustomImpl implements PostRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void incrementCommentCount(String postId, long delta) {
+        increment(postId, "commentCount", delta);
+    }
+
+    @Override
+    public boolean softDelete(String postId) {
+        Query query = Query.query(Criteria.where("id").is(postId).and("isDeleted").is(false));
+        Update update = new Update()
+                .set("isDeleted", true)
+                .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateFirst(query, update, Post.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public List<String> incrementLikeCounts(Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+
+        // Error indexes refer to the order the updates were added in
+        List<String> postIds = new ArrayList<>(deltas.keySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        LocalDateTime now = LocalDateTime.now();
+        postIds.forEach(postId -> bulk.updateOne(
+                Query.query(Criteria.where("id").is(postId)),
+                new Update().inc("likeCount", deltas.get(postId)).set("updatedAt", now)));
+        try {
+            bulk.execute();
+            return List.of();
+        } catch (BulkOperationException e) {
+            return e.getErrors().stream().map(error -> postIds.get(error.getIndex())).toList();
+        }
+    }
+
+    private void increment(String postId, String field, long delta) {
+        Query query = Query.query(Criteria.where("id").is(postId));
+        Update update = new Update()
+                .inc(field, delta)
+                .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(query, update, Post.class);
+    }
+}
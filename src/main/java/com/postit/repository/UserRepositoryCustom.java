@@ -0,0 +1,12 @@
+package com.postit.repository;
+
+public interface UserRepositoryCustom {
+
+    // Adjusts followingCount on the follower and followersCount on the followed user
+    void incrementFollowCounts(String followerId, String followingId, long delta);
+
+    void incrementPostsCount(String userId, long delta);
+
+    // Replaces the password hash only if it is still the one that was checked
+    boolean updatePassword(String userId, String currentHash, String newHash);
+}
@@ -0,0 +1,45 @@
+package com.postit.repository;
+
+import com.postit.model.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void incrementFollowCounts(String followerId, String followingId, long delta) {
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)
+                .updateOne(byId(followerId), new Update().inc("followingCount", delta).set("updatedAt", now))
+                .updateOne(byId(followingId), new Update().inc("followersCount", delta).set("updatedAt", now))
+                .execute();
+    }
+
+    @Override
+    public void incrementPostsCount(String userId, long delta) {
+        mongoTemplate.updateFirst(byId(userId),
+                new Update().inc("postsCount", delta).set("updatedAt", LocalDateTime.now()),
+                User.class);
+    }
+
+    @Override
+    public boolean updatePassword(String userId, String currentHash, String newHash) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(userId).and("password").is(currentHash)),
+                new Update().set("password", newHash),
+                User.class).getModifiedCount() > 0;
+    }
+
+    private Query byId(String userId) {
+        return Query.query(Criteria.where("id").is(userId));
+    }
+}
@@ -0,0 +1,72 @@
+package com.postit.security;
+
+import com.postit.model.User;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Security principal carrying the user id alongside the username and roles, so controllers
+ * can act on the current user without looking them up again.
+ * Principals built from an access token have no password.
+ */
+@Getter
+@RequiredArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final String id;
+    private final String username;
+    private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
+    private final boolean enabled;
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(
+                user.getId(),
+                user.getUsername(),
+                user.getPassword() != null ? user.getPassword() : "",
+                toAuthorities(user.getRoles()),
+                user.isEnabled());
+    }
+
+    public static AuthenticatedUser fromToken(String id, String username, Collection<String> roles) {
+        return new AuthenticatedUser(id, username, null, toAuthorities(roles), true);
+    }
+
+    // Role names without the ROLE_ prefix, as stored on User and in the token
+    public Set<String> getRoles() {
+        return authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .map(authority -> authority.startsWith(ROLE_PREFIX) ? authority.substring(ROLE_PREFIX.length()) : authority)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    private static Collection<? extends GrantedAuthority> toAuthorities(Collection<String> roles) {
+        return roles.stream()
+                .map(role -> new SimpleGrantedAuthority(ROLE_PREFIX + role))
+                .collect(Collectors.toList());
+    }
+}
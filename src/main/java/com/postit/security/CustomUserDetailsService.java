@@ -3,53 +3,49 @@ package com.postit.security;
 import com.postit.model.User;
 import com.postit.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.stream.Collectors;
-
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     
     private final UserRepository userRepository;
     
     @Override
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    public AuthenticatedUser loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .or(() -> userRepository.findByEmail(username))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword() != null ? user.getPassword() : "")
-                .authorities(getAuthorities(user))
-                .accountExpired(false)
-                .accountLocked(!user.isEnabled())
-                .credentialsExpired(false)
-                .disabled(!user.isEnabled())
-                .build();
+        return AuthenticatedUser.from(user);
     }
     
-    public UserDetails loadUserById(String userId) {
+    public AuthenticatedUser loadUserById(String userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
         
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword() != null ? user.getPassword() : "")
-                .authorities(getAuthorities(user))
-                .build();
+        return AuthenticatedUser.from(user);
     }
     
-    private Collection<? extends GrantedAuthority> getAuthorities(User user) {
-        return user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                .collect(Collectors.toList());
+    /**
+     * Stores a re-hashed password after a successful login whose hash used an outdated work factor.
+     * Leaves the user untouched if their password changed since it was checked.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        AuthenticatedUser principal = (AuthenticatedUser) user;
+        if (!userRepository.updatePassword(principal.getId(), principal.getPassword(), newPassword)) {
+            return user;
+        }
+        
+        log.debug("Upgraded password hash for user: {}", principal.getUsername());
+        return new AuthenticatedUser(principal.getId(), principal.getUsername(), newPassword,
+                principal.getAuthorities(), principal.isEnabled());
     }
 }
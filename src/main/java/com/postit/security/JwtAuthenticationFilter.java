@@ -1,5 +1,6 @@
 package com.postit.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,19 +9,22 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
+    private static final String NOTIFICATION_STREAM_PATH = "/api/notifications/stream";
+    private static final String STREAM_TOKEN_PARAM = "stream_token";
+    
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService userDetailsService;
     
@@ -31,18 +35,31 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             String path = request.getRequestURI();
+            // Browsers' EventSource can't set headers, so the notification stream takes a
+            // stream-scoped token as a parameter instead. That token is accepted nowhere else.
+            boolean streamToken = false;
+            if (!StringUtils.hasText(jwt) && NOTIFICATION_STREAM_PATH.equals(path)) {
+                jwt = request.getParameter(STREAM_TOKEN_PARAM);
+                streamToken = true;
+            }
 
             if (StringUtils.hasText(jwt)) {
-                if (tokenProvider.validateToken(jwt)) {
-                    String username = tokenProvider.getUsernameFromToken(jwt);
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                boolean expectStreamToken = streamToken;
+                Optional<Claims> claims = tokenProvider.parseClaims(jwt)
+                        .filter(parsed -> tokenProvider.isStreamToken(parsed) == expectStreamToken);
+                if (claims.isPresent()) {
+                    AuthenticatedUser user = tokenProvider.getUserFromClaims(claims.get());
+                    if (user == null) {
+                        // Tokens issued before claims carried the user id still need a lookup
+                        user = userDetailsService.loadUserByUsername(claims.get().getSubject());
+                    }
 
                     UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    log.debug("Set user authentication for user: {}", username);
+                    log.debug("Set user authentication for user: {}", user.getUsername());
                 } else {
                     log.warn("JWT token validation failed for token: {}...", jwt.substring(0, Math.min(20, jwt.length())));
                     SecurityContextHolder.clearContext();
@@ -1,81 +1,183 @@
 package com.postit.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@RequiredArgsConstructor
 public class JwtTokenProvider {
     
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_SCOPE = "scope";
+    static final String SCOPE_NOTIFICATION_STREAM = "notifications:stream";
+    
+    private final MeterRegistry meterRegistry;
+    
     @Value("${jwt.secret}")
     private String jwtSecret;
     
     @Value("${jwt.expiration}")
     private long jwtExpiration;
     
-    @Value("${jwt.refresh-expiration}")
-    private long refreshExpiration;
+    @Value("${jwt.stream-expiration:60000}")
+    private long streamExpiration;
     
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+    
+    private SecretKey signingKey;
+    private JwtParser parser;
     
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return generateToken(userDetails.getUsername());
+    // Claims of recently verified tokens, keyed by token hash and kept until the token expires
+    private Cache<String, Claims> verifiedTokens;
+    
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long remainingMillis = claims.getExpiration() != null
+                                ? claims.getExpiration().getTime() - System.currentTimeMillis()
+                                : 0;
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+        
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+        
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
     }
     
-    public String generateToken(String username) {
+    /**
+     * Access tokens carry the user id and roles so requests can be authenticated without a user lookup.
+     */
+    public String generateToken(AuthenticatedUser user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
         
         return Jwts.builder()
-                .subject(username)
+                .subject(user.getUsername())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLES, user.getRoles())
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
-    public String generateRefreshToken(String username) {
+    /**
+     * Short-lived token that only opens the caller's notification stream. EventSource can't send
+     * headers, so it goes in the URL, where a full access token would end up in logs and history.
+     */
+    public String generateStreamToken(AuthenticatedUser user) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + refreshExpiration);
         
         return Jwts.builder()
-                .subject(username)
+                .subject(user.getUsername())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_SCOPE, SCOPE_NOTIFICATION_STREAM)
                 .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .expiration(new Date(now.getTime() + streamExpiration))
+                .signWith(signingKey)
                 .compact();
     }
     
-    public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    public long getStreamExpiration() {
+        return streamExpiration;
+    }
+    
+    public boolean isStreamToken(Claims claims) {
+        return SCOPE_NOTIFICATION_STREAM.equals(claims.get(CLAIM_SCOPE, String.class));
+    }
+    
+    /**
+     * Verifies the token once and returns its claims, or empty if it is malformed, tampered with
+     * or expired. Repeat presentations of a verified token are answered from the cache.
+     */
+    public Optional<Claims> parseClaims(String token) {
+        String key = hash(token);
+        Claims claims = verifiedTokens.getIfPresent(key);
+        if (claims != null) {
+            return Optional.of(claims);
+        }
         
-        return claims.getSubject();
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(key, claims);
+        }
+        return Optional.of(claims);
+    }
+    
+    /**
+     * Builds the principal from verified claims, or returns null for tokens issued before
+     * the user id and roles were embedded.
+     */
+    public AuthenticatedUser getUserFromClaims(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        if (userId == null) {
+            return null;
+        }
+        Collection<?> roles = claims.get(CLAIM_ROLES, List.class);
+        return AuthenticatedUser.fromToken(userId, claims.getSubject(),
+                roles != null ? roles.stream().map(String::valueOf).toList() : List.of());
+    }
+    
+    public String getUsernameFromToken(String token) {
+        return parseClaims(token)
+                .map(Claims::getSubject)
+                .orElseThrow(() -> new JwtException("Invalid token"));
     }
     
     public boolean validateToken(String token) {
+        return parseClaims(token).isPresent();
+    }
+    
+    private static String hash(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 }
@@ -0,0 +1,46 @@
+package com.postit.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-route token bucket limits, bound from the rate-limit section of the configuration.
+ */
+@Data
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    public enum Mode { LOCAL, REDIS }
+
+    private boolean enabled = true;
+
+    // LOCAL keeps buckets per instance; REDIS shares them across the cluster
+    private Mode mode = Mode.LOCAL;
+
+    // Idle buckets are dropped after this long; by then they would have refilled anyway
+    private long idleMinutes = 10;
+
+    private long maxBuckets = 100_000;
+
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+
+        // Names the bucket; routes sharing a name share a bucket
+        private String name;
+
+        private List<String> methods = new ArrayList<>();
+
+        // Ant-style pattern, e.g. /api/posts/*/like
+        private String path;
+
+        // Burst size
+        private long capacity;
+
+        private long refillPerMinute;
+    }
+}
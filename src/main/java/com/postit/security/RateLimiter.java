@@ -0,0 +1,146 @@
+package com.postit.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token buckets for {@link RateLimitFilter}. In LOCAL mode each bucket is an immutable snapshot
+ * swapped in with compare-and-set, so concurrent requests never block each other. In REDIS mode
+ * buckets live in Redis and are updated by a script, giving one limit across all instances;
+ * if Redis is unreachable the local buckets take over.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    // Refills by elapsed time on the Redis clock, takes one token if available and returns
+    // {allowed, remaining tokens, milliseconds until the next token}
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_SCRIPT = new DefaultRedisScript<>(
+            "local time = redis.call('TIME')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local capacity = tonumber(ARGV[1])\n" +
+            "local rate = tonumber(ARGV[2])\n" +
+            "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+            "local tokens = tonumber(bucket[1]) or capacity\n" +
+            "local ts = tonumber(bucket[2]) or now\n" +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)\n" +
+            "local allowed = 0\n" +
+            "local wait = 0\n" +
+            "if tokens >= 1 then\n" +
+            "  tokens = tokens - 1\n" +
+            "  allowed = 1\n" +
+            "else\n" +
+            "  wait = math.ceil((1 - tokens) / rate)\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3])\n" +
+            "return {allowed, math.floor(tokens), wait}",
+            List.class);
+
+    private final RateLimitProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, AtomicReference<Bucket>> buckets;
+
+    public record Decision(boolean allowed, long limit, long remaining, long retryAfterSeconds) {
+    }
+
+    private record Bucket(double tokens, long refilledAtNanos) {
+    }
+
+    @PostConstruct
+    void init() {
+        for (RateLimitProperties.Route route : properties.getRoutes()) {
+            if (route.getCapacity() < 1 || route.getRefillPerMinute() < 1) {
+                throw new IllegalStateException("Rate limit route " + route.getName()
+                        + " needs a positive capacity and refill-per-minute");
+            }
+        }
+
+        buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterAccess(Duration.ofMinutes(properties.getIdleMinutes()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "ratelimit.buckets");
+    }
+
+    public Decision tryAcquire(RateLimitProperties.Route route, String client) {
+        String key = route.getName() + ":" + client;
+        Decision decision = null;
+        if (properties.getMode() == RateLimitProperties.Mode.REDIS) {
+            decision = tryAcquireShared(route, key);
+        }
+        if (decision == null) {
+            decision = tryAcquireLocal(route, key);
+        }
+
+        if (!decision.allowed()) {
+            meterRegistry.counter("ratelimit.rejected", "route", route.getName()).increment();
+        }
+        return decision;
+    }
+
+    private Decision tryAcquireLocal(RateLimitProperties.Route route, String key) {
+        double tokensPerNano = route.getRefillPerMinute() / (double) TimeUnit.MINUTES.toNanos(1);
+        AtomicReference<Bucket> bucket = buckets.get(key,
+                k -> new AtomicReference<>(new Bucket(route.getCapacity(), System.nanoTime())));
+
+        while (true) {
+            Bucket current = bucket.get();
+            long now = System.nanoTime();
+            double tokens = Math.min(route.getCapacity(),
+                    current.tokens() + (now - current.refilledAtNanos()) * tokensPerNano);
+            boolean allowed = tokens >= 1;
+            Bucket next = new Bucket(allowed ? tokens - 1 : tokens, now);
+            if (bucket.compareAndSet(current, next)) {
+                long waitNanos = allowed ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+                return new Decision(allowed, route.getCapacity(), (long) next.tokens(),
+                        toRetryAfterSeconds(TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+            }
+        }
+    }
+
+    // Returns null when Redis can't be reached, so the caller falls back to the local bucket
+    private Decision tryAcquireShared(RateLimitProperties.Route route, String key) {
+        double tokensPerMilli = route.getRefillPerMinute() / (double) TimeUnit.MINUTES.toMillis(1);
+        try {
+            List<?> result = redisTemplate.execute(TAKE_SCRIPT, List.of(KEY_PREFIX + key),
+                    Long.toString(route.getCapacity()),
+                    Double.toString(tokensPerMilli),
+                    Long.toString(TimeUnit.MINUTES.toMillis(properties.getIdleMinutes())));
+            if (result == null || result.size() < 3) {
+                return null;
+            }
+            return new Decision(((Number) result.get(0)).longValue() == 1, route.getCapacity(),
+                    ((Number) result.get(1)).longValue(), toRetryAfterSeconds(((Number) result.get(2)).longValue()));
+        } catch (DataAccessException e) {
+            log.warn("Shared rate limit unavailable for {}, using the local bucket: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static long toRetryAfterSeconds(long waitMillis) {
+        return waitMillis == 0 ? 0 : Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999));
+    }
+}
@@ -2,25 +2,31 @@ package com.postit.service;
 
 import com.postit.dto.*;
 import com.postit.exception.InvalidCredentialsException;
-import com.postit.exception.ResourceNotFoundException;
 import com.postit.exception.UserAlreadyExistsException;
-import com.postit.model.RefreshToken;
 import com.postit.model.User;
-import com.postit.repository.RefreshTokenRepository;
 import com.postit.repository.UserRepository;
+import com.postit.security.AuthenticatedUser;
+import com.postit.security.CustomUserDetailsService;
 import com.postit.security.JwtTokenProvider;
+import com.postit.security.PasswordHashingExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AccountStatusException;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.core.userdetails.UserDetailsChecker;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @Service
@@ -28,14 +34,41 @@ import java.util.Set;
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenStore refreshTokenStore;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashing;
     private final JwtTokenProvider tokenProvider;
-    private final AuthenticationManager authenticationManager;
+    private final CustomUserDetailsService userDetailsService;
     private final UserService userService;
 
-    @Transactional
-    public AuthResponse register(RegisterRequest request) {
+    private final UserDetailsChecker accountStatusChecker = new AccountStatusUserDetailsChecker();
+
+    @Value("${security.password.io-threads:8}")
+    private int ioThreads;
+
+    // Continues sign-ins once the hash is done: saving the user, issuing tokens, loading the profile.
+    // Kept apart from the hashing pool so slow Mongo or Redis never holds up BCrypt work.
+    private ExecutorService ioExecutor;
+
+    // Checked against when the user doesn't exist, so unknown names take as long as wrong passwords
+    private String unknownUserHash;
+
+    @PostConstruct
+    void init() {
+        ioExecutor = Executors.newFixedThreadPool(ioThreads, new CustomizableThreadFactory("auth-io-"));
+        unknownUserHash = passwordEncoder.encode("unknown-user-password");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Hashes the password on the password hashing pool and saves the user once it is done; fails
+     * fast with TooManyRequestsException when that pool is saturated.
+     */
+    public CompletableFuture<AuthResponse> register(RegisterRequest request) {
         // Check if username already exists
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new UserAlreadyExistsException("Username already exists: " + request.getUsername());
@@ -46,29 +79,75 @@ public class AuthService {
             throw new UserAlreadyExistsException("Email already exists: " + request.getEmail());
         }
 
-        // Create new user
-        Set<String> roles = new HashSet<>();
-        roles.add("USER");
-
-        User user = User.builder()
-                .username(request.getUsername())
-                .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
-                .displayName(request.getDisplayName() != null ? request.getDisplayName() : request.getUsername())
-                .provider("local")
-                .roles(roles)
-                .enabled(true)
-                .build();
+        return passwordHashing.submit(() -> passwordEncoder.encode(request.getPassword()))
+                .thenApplyAsync(passwordHash -> {
+                    // Create new user
+                    Set<String> roles = new HashSet<>();
+                    roles.add("USER");
+
+                    User user = User.builder()
+                            .username(request.getUsername())
+                            .email(request.getEmail())
+                            .password(passwordHash)
+                            .displayName(request.getDisplayName() != null ? request.getDisplayName() : request.getUsername())
+                            .provider("local")
+                            .roles(roles)
+                            .enabled(true)
+                            .build();
+
+                    user = userRepository.save(user);
+                    log.info("New user registered: {}", user.getUsername());
+
+                    return signIn(AuthenticatedUser.from(user));
+                }, ioExecutor);
+    }
 
-        user = userRepository.save(user);
-        log.info("New user registered: {}", user.getUsername());
+    /**
+     * Loads the user on the calling thread and checks the password on the password hashing pool;
+     * fails fast with TooManyRequestsException when that pool is saturated.
+     */
+    public CompletableFuture<AuthResponse> login(LoginRequest request) {
+        // Only a rejected login is a 401; failures of Mongo, Redis or the like surface as 5xx
+        AuthenticatedUser user;
+        try {
+            user = userDetailsService.loadUserByUsername(request.getUsernameOrEmail());
+        } catch (UsernameNotFoundException e) {
+            return passwordHashing.submit(() -> passwordEncoder.matches(request.getPassword(), unknownUserHash))
+                    .thenApply(matched -> {
+                        throw new InvalidCredentialsException("Invalid username or password");
+                    });
+        }
 
-        // Generate tokens
-        String accessToken = tokenProvider.generateToken(user.getUsername());
-        String refreshToken = tokenProvider.generateRefreshToken(user.getUsername());
+        String storedHash = user.getPassword();
+        return passwordHashing.submit(() -> checkPassword(request.getPassword(), storedHash))
+                .thenApplyAsync(upgradedHash -> {
+                    try {
+                        accountStatusChecker.check(user);
+                    } catch (AccountStatusException e) {
+                        throw new InvalidCredentialsException("Invalid username or password");
+                    }
+                    if (upgradedHash != null) {
+                        userDetailsService.updatePassword(user, upgradedHash);
+                    }
+
+                    log.info("User logged in: {}", user.getUsername());
+                    return signIn(user);
+                }, ioExecutor);
+    }
 
-        // Save refresh token
-        saveRefreshToken(user.getId(), refreshToken);
+    // Runs on the hashing pool. Returns a re-hash of the password if the stored hash used an
+    // outdated work factor, otherwise null; throws if the password is wrong.
+    private String checkPassword(String password, String storedHash) {
+        if (!passwordEncoder.matches(password, storedHash)) {
+            throw new InvalidCredentialsException("Invalid username or password");
+        }
+        return passwordEncoder.upgradeEncoding(storedHash) ? passwordEncoder.encode(password) : null;
+    }
+
+    private AuthResponse signIn(AuthenticatedUser user) {
+        // Generate tokens; each device signs in with its own refresh token
+        String accessToken = tokenProvider.generateToken(user);
+        String refreshToken = refreshTokenStore.issue(user);
 
         // Get user profile
         UserProfileResponse userProfile = userService.getUserProfile(user.getId(), null);
@@ -80,68 +159,15 @@ public class AuthService {
                 .build();
     }
 
-    @Transactional
-    public AuthResponse login(LoginRequest request) {
-        try {
-            // Authenticate user
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            request.getUsernameOrEmail(),
-                            request.getPassword()));
-
-            // Get user
-            User user = userRepository.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-            // Generate tokens
-            String accessToken = tokenProvider.generateToken(authentication);
-            String refreshToken = tokenProvider.generateRefreshToken(user.getUsername());
-
-            // Save refresh token
-            refreshTokenRepository.deleteByUserId(user.getId());
-            saveRefreshToken(user.getId(), refreshToken);
-
-            // Get user profile
-            UserProfileResponse userProfile = userService.getUserProfile(user.getId(), null);
-
-            log.info("User logged in: {}", user.getUsername());
-
-            return AuthResponse.builder()
-                    .accessToken(accessToken)
-                    .refreshToken(refreshToken)
-                    .user(userProfile)
-                    .build();
-
-        } catch (Exception e) {
-            throw new InvalidCredentialsException("Invalid username or password");
-        }
-    }
-
-    @Transactional
     public AuthResponse refreshToken(RefreshTokenRequest request) {
         String refreshTokenValue = request.getRefreshToken();
 
-        // Validate refresh token
-        if (!tokenProvider.validateToken(refreshTokenValue)) {
-            throw new InvalidCredentialsException("Invalid refresh token");
-        }
-
-        // Find refresh token in database
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(refreshTokenValue)
-                .orElseThrow(() -> new ResourceNotFoundException("Refresh token not found"));
-
-        // Check if expired
-        if (refreshToken.isExpired()) {
-            refreshTokenRepository.delete(refreshToken);
-            throw new InvalidCredentialsException("Refresh token expired");
-        }
-
-        // Get user
-        User user = userRepository.findById(refreshToken.getUserId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        // The stored entry carries the user's id and roles, so no user lookup is needed
+        AuthenticatedUser user = refreshTokenStore.find(refreshTokenValue)
+                .orElseThrow(() -> new InvalidCredentialsException("Invalid refresh token"));
 
         // Generate new access token
-        String newAccessToken = tokenProvider.generateToken(user.getUsername());
+        String newAccessToken = tokenProvider.generateToken(user);
 
         // Get user profile
         UserProfileResponse userProfile = userService.getUserProfile(user.getId(), null);
@@ -153,21 +179,12 @@ public class AuthService {
                 .build();
     }
 
-    @Transactional
-    public void logout(String userId) {
-        refreshTokenRepository.deleteByUserId(userId);
-        log.info("User logged out: {}", userId);
+    public void logout(String refreshToken) {
+        refreshTokenStore.revoke(refreshToken);
     }
 
-    private void saveRefreshToken(String userId, String token) {
-        LocalDateTime expiryDate = LocalDateTime.now().plusDays(7);
-
-        RefreshToken refreshToken = RefreshToken.builder()
-                .userId(userId)
-                .token(token)
-                .expiryDate(expiryDate)
-                .build();
-
-        refreshTokenRepository.save(refreshToken);
+    public void logoutEverywhere(String userId) {
+        refreshTokenStore.revokeAll(userId);
+        log.info("User logged out on all devices: {}", userId);
     }
 }
@@ -0,0 +1,307 @@
+package com.postit.service;
+
+import com.postit.model.Post;
+import com.postit.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Periodically recounts denormalized counters from their source collections and fixes any drift
+ * left behind by failed or partial writes. Only documents whose stored value is wrong get updated,
+ * and only while they still hold the values that were read, so a concurrent {@code $inc} is never
+ * overwritten; documents that changed in between are recounted and retried once, or left to the
+ * next run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CounterReconciliationService {
+
+    private static final int BULK_BATCH_SIZE = 1000;
+    private static final String LOCK_KEY = "counters:reconcile:lock";
+
+    // Deletes the lock only if this run still holds it
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+            "  return redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return 0",
+            Long.class);
+
+    private static final List<Counter> POST_COUNTERS = List.of(
+            new Counter("likeCount", "likes", "postId", new Criteria()),
+            new Counter("commentCount", "comments", "postId", Criteria.where("isDeleted").is(false)));
+
+    private static final List<Counter> USER_COUNTERS = List.of(
+            new Counter("followersCount", "follows", "followingId", new Criteria()),
+            new Counter("followingCount", "follows", "followerId", new Criteria()),
+            new Counter("postsCount", "posts", "userId", Criteria.where("isDeleted").is(false)));
+
+    private final MongoTemplate mongoTemplate;
+    private final LikeCounterBuffer likeCounterBuffer;
+    private final StringRedisTemplate redisTemplate;
+    private final ProfileCache profileCache;
+
+    @Value("${counters.reconcile.on-startup:false}")
+    private boolean reconcileOnStartup;
+
+    @Value("${counters.reconcile.lock-minutes:60}")
+    private long lockMinutes;
+
+    // Runs are long scans, kept off the shared scheduler so its frequent jobs never wait behind them
+    private ExecutorService executor;
+
+    // A counter stored in field, counting the documents of collection that match filter, by groupField
+    private record Counter(String field, String collection, String groupField, Criteria filter) {
+    }
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("counter-reconciliation-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleStartupReconciliation() {
+        // Backfills counters on documents written before they existed, without delaying startup
+        if (reconcileOnStartup) {
+            executor.execute(this::reconcile);
+        }
+    }
+
+    @Scheduled(cron = "${counters.reconcile.cron:0 30 3 * * *}")
+    public void scheduleReconciliation() {
+        executor.execute(this::reconcile);
+    }
+
+    /**
+     * Recounts all counters, unless another instance holds the reconciliation lock. The lock
+     * expires after lockMinutes in case its holder dies mid-run.
+     */
+    public void reconcile() {
+        String owner = UUID.randomUUID().toString();
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, owner, Duration.ofMinutes(lockMinutes));
+        } catch (DataAccessException e) {
+            log.warn("Skipping counter reconciliation, lock unavailable: {}", e.getMessage());
+            return;
+        }
+        if (!Boolean.TRUE.equals(acquired)) {
+            log.info("Skipping counter reconciliation, another instance is running it");
+            return;
+        }
+
+        try {
+            reconcilePostCounters();
+            reconcileUserCounters();
+        } catch (Exception e) {
+            log.error("Counter reconciliation failed", e);
+        } finally {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY), owner);
+            } catch (DataAccessException e) {
+                log.warn("Could not release the counter reconciliation lock: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Like deltas buffered by other instances are a known source of drift: they are already in the
+     * likes collection when it is counted, so when they are flushed afterwards the post stays
+     * over-counted until the next run. Only this instance's buffer is settled first.
+     */
+    public void reconcilePostCounters() {
+        likeCounterBuffer.flush();
+        log.info("Post counter reconciliation fixed {} posts", reconcile(Post.class, POST_COUNTERS, ids -> { }));
+    }
+
+    public void reconcileUserCounters() {
+        // Cached profiles carry the counters and an ETag from updatedAt, so both must move together
+        int fixed = reconcile(User.class, USER_COUNTERS, ids -> profileCache.evict(ids.toArray(String[]::new)));
+        log.info("User counter reconciliation fixed {} users", fixed);
+    }
+
+    // Calls fixed with the ids of each bulk of updated documents
+    private int reconcile(Class<?> entityType, List<Counter> counters, Consumer<List<String>> fixed) {
+        Query documents = new Query();
+        counters.forEach(counter -> documents.fields().include(counter.field()));
+
+        BatchedUpdates updates = new BatchedUpdates(entityType, counters, fixed);
+        try (Stream<Document> stream = mongoTemplate.stream(documents, Document.class,
+                mongoTemplate.getCollectionName(entityType))) {
+            stream.forEach(updates::check);
+        }
+        return updates.finish();
+    }
+
+    // Counts per group value for the groups in ids
+    private Map<String, Long> countBy(Counter counter, Collection<String> ids) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().andOperator(counter.filter(), Criteria.where(counter.groupField()).in(ids))),
+                Aggregation.group(counter.groupField()).count().as("count"));
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, counter.collection(), Document.class)) {
+            counts.put(result.getString("_id"), ((Number) result.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    // Ids are stored as ObjectIds but referenced as strings by the counted collections
+    private static String key(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+    }
+
+    // A null value means the field is missing, which the update backfills
+    private static Long value(Document document, String field) {
+        Object value = document.get(field);
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    // Reads documents in batches of BULK_BATCH_SIZE and counts each batch only after it is read, so
+    // a count never predates the value it replaces. Fixes are written as unordered bulks, each
+    // guarded by the values the fix was computed against.
+    private class BatchedUpdates {
+
+        private final Class<?> entityType;
+        private final List<Counter> counters;
+        private final Consumer<List<String>> fixed;
+        private final List<Document> batch = new ArrayList<>();
+        private int total;
+
+        private record Fix(Object id, Map<String, Long> seen, Map<String, Long> counted) {
+        }
+
+        BatchedUpdates(Class<?> entityType, List<Counter> counters, Consumer<List<String>> fixed) {
+            this.entityType = entityType;
+            this.counters = counters;
+            this.fixed = fixed;
+        }
+
+        void check(Document document) {
+            batch.add(document);
+            if (batch.size() == BULK_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        int finish() {
+            if (!batch.isEmpty()) {
+                flush();
+            }
+            return total;
+        }
+
+        private void flush() {
+            List<Fix> fixes = fixesFor(batch);
+            batch.clear();
+
+            int matched = execute(fixes);
+            total += matched;
+            if (matched < fixes.size()) {
+                List<Fix> retries = recount(fixes);
+                total += execute(retries);
+                log.debug("Recounted {} documents changed during reconciliation", retries.size());
+            }
+        }
+
+        private int execute(List<Fix> fixes) {
+            if (fixes.isEmpty()) {
+                return 0;
+            }
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityType);
+            for (Fix fix : fixes) {
+                Criteria guard = Criteria.where("_id").is(fix.id());
+                // Bumped like any other counter change, so cached copies and ETags are invalidated
+                Update update = new Update().currentDate("updatedAt");
+                for (Counter counter : counters) {
+                    guard.and(counter.field()).is(fix.seen().get(counter.field()));
+                    update.set(counter.field(), fix.counted().get(counter.field()));
+                }
+                bulk.updateOne(Query.query(guard), update);
+            }
+            int matched = bulk.execute().getMatchedCount();
+            if (matched > 0) {
+                fixed.accept(fixes.stream().map(fix -> key(fix.id())).toList());
+            }
+            return matched;
+        }
+
+        // Fixes for the documents that no longer hold their counted values, against fresh counts
+        private List<Fix> recount(List<Fix> fixes) {
+            Query current = Query.query(Criteria.where("_id").in(fixes.stream().map(Fix::id).toList()));
+            counters.forEach(counter -> current.fields().include(counter.field()));
+            return fixesFor(mongoTemplate.find(current, Document.class, mongoTemplate.getCollectionName(entityType)));
+        }
+
+        // Counts the documents' groups now, after their stored values were read
+        private List<Fix> fixesFor(List<Document> documents) {
+            List<String> ids = documents.stream().map(document -> key(document.get("_id"))).toList();
+            Map<String, Map<String, Long>> counts = new HashMap<>();
+            counters.forEach(counter -> counts.put(counter.field(), countBy(counter, ids)));
+
+            List<Fix> fixes = new ArrayList<>();
+            for (Document document : documents) {
+                String id = key(document.get("_id"));
+                Fix fix = fixFor(document, field -> counts.get(field).getOrDefault(id, 0L));
+                if (fix != null) {
+                    fixes.add(fix);
+                }
+            }
+            return fixes;
+        }
+
+        // The fix for a document if any of its counters is missing or differs from its count
+        private Fix fixFor(Document document, Function<String, Long> count) {
+            Map<String, Long> seen = new HashMap<>();
+            Map<String, Long> counted = new HashMap<>();
+            boolean drifted = false;
+            for (Counter counter : counters) {
+                Long stored = value(document, counter.field());
+                long actual = count.apply(counter.field());
+                seen.put(counter.field(), stored);
+                counted.put(counter.field(), actual);
+                drifted |= stored == null || stored != actual;
+            }
+            return drifted ? new Fix(document.get("_id"), seen, counted) : null;
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.postit.dto.UserProfileResponse;
 import com.postit.exception.ResourceNotFoundException;
 import com.postit.model.Follow;
 import com.postit.repository.FollowRepository;
+import com.postit.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,7 +20,10 @@ import java.util.stream.Collectors;
 public class FollowService {
 
     private final FollowRepository followRepository;
+    private final UserRepository userRepository;
     private final UserService userService;
+    private final TimelineService timelineService;
+    private final ProfileCache profileCache;
 
     @Transactional
     public void followUser(String followerId, String followingId) {
@@ -26,21 +31,30 @@ public class FollowService {
             throw new IllegalArgumentException("You cannot follow yourself");
         }
 
-        if (!followRepository.existsByFollowerIdAndFollowingId(followerId, followingId)) {
-            Follow follow = Follow.builder()
-                    .followerId(followerId)
-                    .followingId(followingId)
-                    .build();
-
-            followRepository.save(follow);
-            log.info("User {} followed user {}", followerId, followingId);
+        Follow follow = Follow.builder()
+                .followerId(followerId)
+                .followingId(followingId)
+                .build();
+        try {
+            followRepository.insert(follow);
+        } catch (DuplicateKeyException e) {
+            // Already following; the unique (followerId, followingId) index makes this check race-free
+            return;
         }
+
+        userRepository.incrementFollowCounts(followerId, followingId, 1);
+        profileCache.evict(followerId, followingId);
+        timelineService.invalidate(followerId);
+        log.info("User {} followed user {}", followerId, followingId);
     }
 
     @Transactional
     public void unfollowUser(String followerId, String followingId) {
-        if (followRepository.existsByFollowerIdAndFollowingId(followerId, followingId)) {
-            followRepository.deleteByFollowerIdAndFollowingId(followerId, followingId);
+        // Only decrement when this call actually removed the follow
+        if (followRepository.deleteByFollowerIdAndFollowingId(followerId, followingId) > 0) {
+            userRepository.incrementFollowCounts(followerId, followingId, -1);
+            profileCache.evict(followerId, followingId);
+            timelineService.invalidate(followerId);
             log.info("User {} unfollowed user {}", followerId, followingId);
         }
     }
@@ -0,0 +1,102 @@
+package com.postit.service;
+
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.MongoTimeoutException;
+import com.postit.repository.PostRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for like counts. Likes and unlikes accumulate as per-post deltas in memory
+ * and are flushed to Mongo as one unordered bulk of {@code $inc}s, so a viral post costs one
+ * document write per flush interval instead of one per like.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeCounterBuffer {
+
+    private final ConcurrentHashMap<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final PostRepository postRepository;
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    void registerMetrics() {
+        meterRegistry.gaugeMapSize("posts.like-buffer.pending", Tags.empty(), pending);
+    }
+
+    public void add(String postId, long delta) {
+        pending.merge(postId, delta, Long::sum);
+    }
+
+    // Likes on this post that are not in Mongo yet; reads add this to the persisted count
+    public long pendingDelta(String postId) {
+        return pending.getOrDefault(postId, 0L);
+    }
+
+    @Scheduled(fixedDelayString = "${counters.like-buffer.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // remove() is atomic per key, so a concurrent add either lands in this batch or starts the next one
+        Map<String, Long> batch = new HashMap<>();
+        for (String postId : pending.keySet()) {
+            Long delta = pending.remove(postId);
+            if (delta != null && delta != 0) {
+                batch.put(postId, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<String> failed;
+        try {
+            failed = postRepository.incrementLikeCounts(batch);
+        } catch (RuntimeException e) {
+            if (!isUnsent(e)) {
+                // Some updates may have been applied, so retrying could count them twice
+                log.error("Like count flush for {} posts ended in an unknown state, leaving drift to reconciliation: {}",
+                        batch.size(), e.getMessage());
+                return;
+            }
+            failed = List.copyOf(batch.keySet());
+        }
+
+        // Put the failed deltas back so the next flush retries them; the rest are applied
+        failed.forEach(postId -> pending.merge(postId, batch.get(postId), Long::sum));
+        meterRegistry.counter("posts.like-buffer.flushed").increment(batch.size() - failed.size());
+        if (!failed.isEmpty()) {
+            log.warn("Could not flush like counts for {} of {} posts", failed.size(), batch.size());
+        }
+    }
+
+    // True if the bulk never reached the server: no server was selectable or no connection opened
+    private static boolean isUnsent(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoTimeoutException || cause instanceof MongoSocketOpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,113 @@
+package com.postit.service;
+
+import com.postit.model.Like;
+import com.postit.repository.LikeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user set of liked post ids in Redis, so "which of these posts did the viewer like"
+ * is a single SMISMEMBER per page instead of one Mongo query per post.
+ * Sets are warmed lazily from {@link LikeRepository} and kept current by likes and unlikes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LikedPostIndex {
+
+    private static final String KEY_PREFIX = "liked:";
+
+    // Members are ObjectIds, so an empty string can't clash; it keeps the set (and so the key)
+    // alive for users who have not liked anything yet
+    private static final String WARM_MARKER = "";
+
+    // Runs SADD/SREM only on warm sets; a cold set is loaded in full from Mongo on its next read
+    private static final RedisScript<Long> UPDATE_IF_WARM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "  return redis.call(ARGV[1], KEYS[1], ARGV[2])\n" +
+            "end\n" +
+            "return -1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final LikeRepository likeRepository;
+
+    @Value("${likes.index.ttl-hours:24}")
+    private long ttlHours;
+
+    public Set<String> likedAmong(String userId, Collection<String> postIds) {
+        if (postIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        String key = KEY_PREFIX + userId;
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                warm(userId);
+            }
+
+            Map<Object, Boolean> membership = redisTemplate.opsForSet().isMember(key, postIds.toArray());
+            if (membership == null) {
+                return Collections.emptySet();
+            }
+            return membership.entrySet().stream()
+                    .filter(entry -> Boolean.TRUE.equals(entry.getValue()))
+                    .map(entry -> (String) entry.getKey())
+                    .collect(Collectors.toSet());
+        } catch (DataAccessException e) {
+            log.warn("Liked-post index unavailable for user {}, querying Mongo: {}", userId, e.getMessage());
+            return likeRepository.findPostIdsByUserIdAndPostIdIn(userId, postIds)
+                    .stream()
+                    .map(Like::getPostId)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    public void recordLike(String userId, String postId) {
+        update(userId, "SADD", postId);
+    }
+
+    public void recordUnlike(String userId, String postId) {
+        update(userId, "SREM", postId);
+    }
+
+    private void warm(String userId) {
+        List<String> likedPostIds = likeRepository.findPostIdsByUserId(userId)
+                .stream()
+                .map(Like::getPostId)
+                .collect(Collectors.toList());
+        likedPostIds.add(WARM_MARKER);
+
+        String key = KEY_PREFIX + userId;
+        redisTemplate.opsForSet().add(key, likedPostIds.toArray(new String[0]));
+        redisTemplate.expire(key, Duration.ofHours(ttlHours));
+    }
+
+    private void update(String userId, String command, String postId) {
+        try {
+            redisTemplate.execute(UPDATE_IF_WARM_SCRIPT, List.of(KEY_PREFIX + userId), command, postId);
+        } catch (DataAccessException e) {
+            // Drop the set rather than leave it wrong; it is rebuilt from Mongo on the next read
+            log.warn("Could not update liked-post index for user {}: {}", userId, e.getMessage());
+            try {
+                redisTemplate.delete(KEY_PREFIX + userId);
+            } catch (DataAccessException ignored) {
+                // Redis is down; nothing more to do
+            }
+        }
+    }
+}
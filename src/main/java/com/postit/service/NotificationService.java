@@ -1,63 +1,163 @@
 package com.postit.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.postit.dto.CursorPage;
 import com.postit.dto.NotificationResponse;
 import com.postit.event.PostCommentedEvent;
 import com.postit.event.PostLikedEvent;
 import com.postit.model.Notification;
 import com.postit.repository.NotificationRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
 
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
     private final NotificationRepository notificationRepository;
+    private final UnreadNotificationCounter unreadCounter;
+    private final NotificationStreamService streamService;
 
-    @Transactional
-    public void createLikeNotification(PostLikedEvent event) {
-        // Don't notify user about their own likes
+    @Value("${notifications.coalesce.window-minutes:60}")
+    private long coalesceWindowMinutes;
+
+    @Value("${notifications.coalesce.recent-actors:3}")
+    private int recentActorLimit;
+
+    @Value("${notifications.dedup.recent-ids:100000}")
+    private long recentEventIdLimit;
+
+    // Event ids written recently, so most redeliveries are dropped without touching Mongo
+    private Cache<String, Boolean> recentEventIds;
+
+    @PostConstruct
+    void init() {
+        recentEventIds = Caffeine.newBuilder()
+            .maximumSize(recentEventIdLimit)
+            .build();
+    }
+
+    // Notifications for a user's own likes and comments are skipped, so these may return null
+    public Notification buildLikeNotification(PostLikedEvent event) {
         if (event.getLikeUserId().equals(event.getPostOwnerId())) {
-            return;
+            return null;
         }
 
-        Notification notification = Notification.builder()
+        return Notification.builder()
             .userId(event.getPostOwnerId())
             .senderId(event.getLikeUserId())
             .senderUsername(event.getLikerUsername())
+            .eventId(event.getEventId())
             .type(Notification.NotificationType.LIKE)
             .postId(event.getPostId())
             .message(event.getLikerUsername() + " liked your post")
+            .groupKey(likeGroupKey(event))
+            .recentActors(new ArrayList<>(List.of(new Notification.Actor(event.getLikeUserId(), event.getLikerUsername()))))
             .build();
-
-        notificationRepository.save(notification);
-        log.info("Like notification created for user: {}", event.getPostOwnerId());
     }
 
-    @Transactional
-    public void createCommentNotification(PostCommentedEvent event) {
-        // Don't notify user about their own comments
+    public Notification buildCommentNotification(PostCommentedEvent event) {
         if (event.getCommentUserId().equals(event.getPostOwnerId())) {
-            return;
+            return null;
         }
 
-        Notification notification = Notification.builder()
+        return Notification.builder()
             .userId(event.getPostOwnerId())
             .senderId(event.getCommentUserId())
             .senderUsername(event.getCommenterUsername())
+            .eventId(event.getEventId())
             .type(Notification.NotificationType.COMMENT)
             .postId(event.getPostId())
             .commentId(event.getCommentId())
             .message(event.getCommenterUsername() + " commented on your post")
             .build();
+    }
+
+    /**
+     * Writes the notifications with one unordered bulk write, retrying only the writes that failed.
+     * Events are consumed at least once, so each write is idempotent on its own document: recently
+     * written ids are skipped in memory, plain notifications are unique by event id, and a coalesced
+     * like only applies if its actor's claim on the group is new. Claims of failed writes are
+     * released so a redelivery applies them; a crash between claim and write leaves that actor
+     * out of the group's count.
+     * Returns the indexes, in the given list, of notifications still failing after the last attempt.
+     */
+    public List<Integer> saveAll(List<Notification> notifications) {
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> batchEventIds = new HashSet<>();
+
+        for (int i = 0; i < notifications.size(); i++) {
+            String eventId = notifications.get(i).getEventId();
+            if (eventId != null && (recentEventIds.getIfPresent(eventId) != null || !batchEventIds.add(eventId))) {
+                continue;
+            }
+            accepted.add(i);
+        }
+
+        List<Integer> failed = write(notifications, accepted);
+
+        Set<Integer> unwritten = new HashSet<>(failed);
+        accepted.stream()
+            .filter(index -> !unwritten.contains(index))
+            .map(index -> notifications.get(index).getEventId())
+            .filter(Objects::nonNull)
+            .forEach(eventId -> recentEventIds.put(eventId, Boolean.TRUE));
+
+        return failed.stream().sorted().toList();
+    }
+
+    private List<Integer> write(List<Notification> notifications, List<Integer> indexes) {
+        // Likes aren't merged in memory: each claims its actor first, so the group counts its actors once
+        List<Notification> writes = indexes.stream().map(notifications::get).toList();
+
+        List<Integer> pending = IntStream.range(0, writes.size()).boxed().toList();
+        Set<Integer> duplicates = new HashSet<>();
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Notification> batch = pending.stream().map(writes::get).toList();
+            NotificationRepository.WriteResult result = notificationRepository.writeAll(batch, recentActorLimit);
+            if (!result.failed().isEmpty()) {
+                log.warn("{} of {} notification writes failed (attempt {})", result.failed().size(), batch.size(), attempt);
+            }
 
-        notificationRepository.save(notification);
-        log.info("Comment notification created for user: {}", event.getPostOwnerId());
+            List<Integer> retry = pending;
+            result.duplicates().forEach(position -> duplicates.add(retry.get(position)));
+            pending = result.failed().stream().map(retry::get).toList();
+        }
+
+        // Notifications that were already there are neither counted nor pushed again
+        Set<Integer> notWritten = new HashSet<>(pending);
+        notWritten.addAll(duplicates);
+        updateUnreadCounters(writes, notWritten);
+        pushWritten(writes, notWritten);
+        return pending.stream()
+            .map(indexes::get)
+            .toList();
     }
 
     public Page<NotificationResponse> getUserNotifications(String userId, Pageable pageable) {
@@ -66,6 +166,25 @@ public class NotificationService {
             .map(this::mapToResponse);
     }
 
+    public CursorPage<NotificationResponse> getUserNotifications(String userId, String cursor, int size) {
+        size = PageCursor.clampSize(size);
+        PageCursor before = PageCursor.decode(cursor);
+        PageRequest keysetPage = PageCursor.keysetPage(size);
+
+        List<Notification> notifications = before == null
+            ? notificationRepository.findByUserId(userId, keysetPage)
+            : notificationRepository.findByUserIdBefore(userId, before.createdAt(), before.objectId(), keysetPage);
+
+        boolean hasNext = notifications.size() > size;
+        List<Notification> page = hasNext ? notifications.subList(0, size) : notifications;
+        Notification last = hasNext ? page.get(size - 1) : null;
+
+        return CursorPage.<NotificationResponse>builder()
+            .content(page.stream().map(this::mapToResponse).collect(Collectors.toList()))
+            .nextCursor(last != null ? PageCursor.of(last.getCreatedAt(), last.getId()).encode() : null)
+            .build();
+    }
+
     public Page<NotificationResponse> getUnreadNotifications(String userId, Pageable pageable) {
         return notificationRepository
             .findByUserIdAndReadFalseOrderByCreatedAtDesc(userId, pageable)
@@ -73,39 +192,95 @@ public class NotificationService {
     }
 
     public long getUnreadCount(String userId) {
-        return notificationRepository.countByUserIdAndReadFalse(userId);
+        return unreadCounter.get(userId);
     }
 
     @Transactional
-    public void markAsRead(String notificationId) {
-        notificationRepository.findById(notificationId).ifPresent(notification -> {
-            notification.setRead(true);
-            notificationRepository.save(notification);
-        });
+    public void markAsRead(String notificationId, String userId) {
+        if (notificationRepository.markRead(notificationId, userId)) {
+            unreadCounter.add(userId, -1);
+        }
     }
 
     @Transactional
     public void markAllAsRead(String userId) {
-        // Get all unread notifications for the user (without pagination)
-        notificationRepository.findAll().stream()
-            .filter(n -> n.getUserId().equals(userId) && !n.isRead())
-            .forEach(notification -> {
-                notification.setRead(true);
-                notificationRepository.save(notification);
-            });
+        // Subtract what this update changed rather than zeroing the counter, so notifications the
+        // consumer counts in meanwhile are not lost
+        long marked = notificationRepository.markAllRead(userId);
+        if (marked > 0) {
+            unreadCounter.add(userId, -marked);
+        }
+    }
+
+    // New notifications each add one unread. A coalesced upsert may or may not have turned a read
+    // group unread again, so those recipients are recounted instead.
+    private void updateUnreadCounters(List<Notification> writes, Set<Integer> skipped) {
+        Map<String, Long> added = new HashMap<>();
+        Set<String> recount = new HashSet<>();
+        for (int i = 0; i < writes.size(); i++) {
+            Notification notification = writes.get(i);
+            if (skipped.contains(i)) {
+                continue;
+            }
+            if (notification.getGroupKey() == null) {
+                added.merge(notification.getUserId(), 1L, Long::sum);
+            } else {
+                recount.add(notification.getUserId());
+            }
+        }
+
+        added.keySet().removeAll(recount);
+        added.forEach(unreadCounter::add);
+        if (!recount.isEmpty()) {
+            unreadCounter.evict(recount);
+        }
+    }
+
+    // A group is pushed once per batch, with its latest like; clients refetch for the full group
+    private void pushWritten(List<Notification> writes, Set<Integer> skipped) {
+        Map<String, Notification> latest = new LinkedHashMap<>();
+        for (int i = 0; i < writes.size(); i++) {
+            if (!skipped.contains(i)) {
+                Notification notification = writes.get(i);
+                String key = notification.getGroupKey() != null
+                    ? notification.getUserId() + "|" + notification.getGroupKey()
+                    : "#" + i;
+                latest.remove(key);
+                latest.put(key, notification);
+            }
+        }
+        latest.values().forEach(notification -> streamService.push(notification.getUserId(), mapToResponse(notification)));
+    }
+
+    private String likeGroupKey(PostLikedEvent event) {
+        LocalDateTime likedAt = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        long window = likedAt.toEpochSecond(ZoneOffset.UTC) / Duration.ofMinutes(coalesceWindowMinutes).toSeconds();
+        return "LIKE:" + event.getPostId() + ":" + window;
     }
 
     private NotificationResponse mapToResponse(Notification notification) {
+        long actorCount = Math.max(notification.getActorCount(), 1);
+        List<String> recentActors = notification.getRecentActors() != null
+            ? notification.getRecentActors().stream().map(Notification.Actor::getUsername).collect(Collectors.toList())
+            : new ArrayList<>();
+        Collections.reverse(recentActors);
+
         return NotificationResponse.builder()
             .id(notification.getId())
             .senderId(notification.getSenderId())
             .senderUsername(notification.getSenderUsername())
             .type(notification.getType().toString())
             .postId(notification.getPostId())
-            .message(notification.getMessage())
+            .commentId(notification.getCommentId())
+            .message(actorCount > 1
+                ? notification.getSenderUsername() + " and " + (actorCount - 1)
+                    + (actorCount == 2 ? " other" : " others") + " liked your post"
+                : notification.getMessage())
+            .actorCount(actorCount)
+            .recentActors(recentActors)
             .read(notification.isRead())
             .createdAt(notification.getCreatedAt())
+            .lastActivityAt(notification.getLastActivityAt() != null ? notification.getLastActivityAt() : notification.getCreatedAt())
             .build();
     }
 }
-
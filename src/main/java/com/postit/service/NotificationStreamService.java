@@ -0,0 +1,243 @@
+package com.postit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.postit.dto.NotificationResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes new notifications to the recipient's open Server-Sent Event streams.
+ * Pushes go through Redis pub/sub so they reach streams held by any instance. Each stream has a
+ * bounded outbox drained by a small shared sender pool, so idle streams cost no thread; a client
+ * that falls a full buffer behind, or stops reading so that a write blocks past the write timeout,
+ * is disconnected and expected to reconnect and refetch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NotificationStreamService {
+
+    private static final String PUSH_CHANNEL = "notifications:push";
+    private static final String NOTIFICATION_EVENT = "notification";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notifications.stream.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${notifications.stream.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${notifications.stream.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${notifications.stream.write-timeout-ms:10000}")
+    private long writeTimeoutMs;
+
+    private final Map<String, Set<Stream>> streams = new ConcurrentHashMap<>();
+    private ExecutorService sender;
+    private Counter dropped;
+
+    // Null name marks a heartbeat comment
+    private record Outgoing(String name, Object data) {
+    }
+
+    // Package-private so Jackson can bind it from pub/sub messages
+    record PushMessage(String userId, NotificationResponse notification) {
+    }
+
+    @PostConstruct
+    void init() {
+        sender = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("sse-sender-"));
+        dropped = meterRegistry.counter("notifications.streams.dropped");
+        meterRegistry.gauge("notifications.streams.open", streams,
+                map -> map.values().stream().mapToInt(Set::size).sum());
+
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                PushMessage push = objectMapper.readValue(message.getBody(), PushMessage.class);
+                deliver(push.userId(), new Outgoing(NOTIFICATION_EVENT, push.notification()));
+            } catch (IOException e) {
+                log.warn("Ignoring malformed notification push: {}", e.getMessage());
+            }
+        }, new ChannelTopic(PUSH_CHANNEL));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streams.values().forEach(userStreams -> userStreams.forEach(stream -> stream.emitter.complete()));
+        sender.shutdownNow();
+    }
+
+    public SseEmitter open(String userId) {
+        SseEmitter emitter = new SseEmitter(Duration.ofMinutes(timeoutMinutes).toMillis());
+        Stream stream = new Stream(userId, emitter);
+        streams.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(stream);
+
+        emitter.onCompletion(stream::remove);
+        emitter.onTimeout(stream::remove);
+        emitter.onError(error -> stream.remove());
+
+        // Flushes the response headers so the client sees the stream as open
+        stream.offer(new Outgoing(null, "connected"));
+        return emitter;
+    }
+
+    public void push(String userId, NotificationResponse notification) {
+        try {
+            redisTemplate.convertAndSend(PUSH_CHANNEL,
+                    objectMapper.writeValueAsString(new PushMessage(userId, notification)));
+        } catch (DataAccessException | JsonProcessingException e) {
+            // Still reach streams held by this instance
+            log.debug("Could not broadcast notification push for user {}: {}", userId, e.getMessage());
+            deliver(userId, new Outgoing(NOTIFICATION_EVENT, notification));
+        }
+    }
+
+    // Keeps idle connections from being closed by proxies and detects dead clients
+    @Scheduled(fixedRateString = "${notifications.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        Outgoing ping = new Outgoing(null, "ping");
+        streams.values().forEach(userStreams -> userStreams.forEach(stream -> stream.offer(ping)));
+    }
+
+    // A write to a client that stopped reading blocks once the socket buffer is full, holding a
+    // sender thread that every other stream needs
+    @Scheduled(fixedDelayString = "${notifications.stream.stall-check-ms:2000}")
+    public void dropStalledStreams() {
+        long deadline = System.nanoTime() - Duration.ofMillis(writeTimeoutMs).toNanos();
+        streams.values().forEach(userStreams -> userStreams.forEach(stream -> {
+            if (stream.isStalled(deadline)) {
+                stream.cutOff();
+            }
+        }));
+    }
+
+    private void deliver(String userId, Outgoing event) {
+        Set<Stream> userStreams = streams.get(userId);
+        if (userStreams != null) {
+            userStreams.forEach(stream -> stream.offer(event));
+        }
+    }
+
+    private class Stream {
+
+        private final String userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Outgoing> outbox = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Start of the write in progress, or 0, and the sender thread running it
+        private volatile long writingSince;
+        private volatile Thread writer;
+
+        Stream(String userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(Outgoing event) {
+            if (!outbox.offer(event)) {
+                log.debug("Dropping slow notification stream for user {}", userId);
+                dropped.increment();
+                remove();
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            writer = Thread.currentThread();
+            try {
+                Outgoing event;
+                while ((event = outbox.poll()) != null) {
+                    writingSince = System.nanoTime();
+                    emitter.send(event.name() == null
+                            ? SseEmitter.event().comment(String.valueOf(event.data()))
+                            : SseEmitter.event().name(event.name()).data(event.data()));
+                    writingSince = 0;
+                }
+            } catch (IOException e) {
+                // Client went away or the write was cut off as stalled
+                remove();
+                outbox.clear();
+                emitter.completeWithError(e);
+                return;
+            } catch (IllegalStateException e) {
+                // The emitter already completed
+                remove();
+                outbox.clear();
+                return;
+            } finally {
+                writingSince = 0;
+                synchronized (this) {
+                    writer = null;
+                }
+                // Clear an interrupt from cutOff() so it can't reach this thread's next stream
+                Thread.interrupted();
+                draining.set(false);
+            }
+            // An event may have been queued after the last poll but before draining was reset
+            if (!outbox.isEmpty() && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        boolean isStalled(long deadline) {
+            long since = writingSince;
+            return since != 0 && since - deadline < 0;
+        }
+
+        // Unregisters the stream and interrupts its blocked write, which then fails and completes the
+        // emitter on the sender thread. The emitter can't be completed from here: its lock is held by
+        // the blocked send.
+        void cutOff() {
+            log.debug("Dropping stalled notification stream for user {}", userId);
+            dropped.increment();
+            remove();
+            outbox.clear();
+            synchronized (this) {
+                if (writer != null && writingSince != 0) {
+                    writer.interrupt();
+                }
+            }
+        }
+
+        void remove() {
+            streams.computeIfPresent(userId, (id, userStreams) -> {
+                userStreams.remove(this);
+                return userStreams.isEmpty() ? null : userStreams;
+            });
+        }
+    }
+}
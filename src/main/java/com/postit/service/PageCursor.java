@@ -0,0 +1,80 @@
+package com.postit.service;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * A keyset position in a newest-first list, ordered by {@code (createdAt, id)}.
+ * Clients only ever see it as the opaque string produced by {@link #encode()}.
+ */
+public record PageCursor(long timestamp, String id) {
+
+    public static final int MAX_PAGE_SIZE = 50;
+
+    public static final Comparator<PageCursor> NEWEST_FIRST = Comparator
+            .comparingLong(PageCursor::timestamp)
+            .thenComparing(PageCursor::id)
+            .reversed();
+
+    public static PageCursor of(LocalDateTime createdAt, String id) {
+        return new PageCursor(createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), id);
+    }
+
+    /**
+     * Clamps a client-supplied page size to 1..{@value #MAX_PAGE_SIZE}, for keyset and offset pages alike.
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * One keyset page, newest first, with one extra row to tell whether another page follows.
+     * {@code size} must already be clamped.
+     */
+    public static PageRequest keysetPage(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return PageRequest.of(0, size + 1, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            String id = decoded.substring(separator + 1);
+            if (separator < 0 || !ObjectId.isValid(id)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PageCursor(Long.parseLong(decoded.substring(0, separator)), id);
+        } catch (IllegalArgumentException e) {
+            // Also covers malformed Base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = timestamp + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime createdAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+
+    public ObjectId objectId() {
+        return new ObjectId(id);
+    }
+}
@@ -0,0 +1,121 @@
+package com.postit.service;
+
+import com.postit.dto.PostResponse;
+import com.postit.model.Post;
+import com.postit.model.User;
+import com.postit.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a page of posts into {@link PostResponse}s with a fixed number of lookups:
+ * one {@code $in} for the authors and one liked-post index check for the viewer, however large the page.
+ */
+@Component
+@RequiredArgsConstructor
+public class PostHydrator {
+
+    private final UserRepository userRepository;
+    private final LikedPostIndex likedPostIndex;
+    private final LikeCounterBuffer likeCounterBuffer;
+
+    public List<PostResponse> hydrate(List<Post> posts, String currentUserId) {
+        if (posts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return build(posts, findAuthors(posts), findLikedPostIds(posts, currentUserId));
+    }
+
+    /**
+     * Derives a weak ETag for the responses before building them and returns null if
+     * {@code notModified} accepts it. The tag covers each post's updatedAt (bumped by every
+     * counter write), its buffered like delta, its author's updatedAt (bumped by profile edits)
+     * and the viewer's liked flag; {@code extra} adds anything else the enclosing response
+     * carries, such as a page total.
+     */
+    public List<PostResponse> hydrateIfModified(List<Post> posts, String currentUserId, String extra,
+                                                Predicate<String> notModified) {
+        if (posts.isEmpty()) {
+            return notModified.test(etag(posts, Collections.emptyMap(), Collections.emptySet(), extra))
+                    ? null : Collections.emptyList();
+        }
+
+        Set<String> likedPostIds = findLikedPostIds(posts, currentUserId);
+        Map<String, User> authors = findAuthors(posts);
+        if (notModified.test(etag(posts, authors, likedPostIds, extra))) {
+            return null;
+        }
+        return build(posts, authors, likedPostIds);
+    }
+
+    public PostResponse hydrate(Post post, String currentUserId) {
+        return hydrate(List.of(post), currentUserId).get(0);
+    }
+
+    public PostResponse toResponse(Post post, User user, boolean likedByCurrentUser) {
+        return PostResponse.builder()
+                .id(post.getId())
+                .userId(post.getUserId())
+                .username(user != null ? user.getUsername() : "Unknown")
+                .displayName(user != null ? user.getDisplayName() : "Unknown")
+                .content(post.getContent())
+                .likeCount((int) (post.getLikeCount() + likeCounterBuffer.pendingDelta(post.getId())))
+                .commentCount(post.getCommentCount())
+                .likedByCurrentUser(likedByCurrentUser)
+                .createdAt(post.getCreatedAt())
+                .updatedAt(post.getUpdatedAt())
+                .build();
+    }
+
+    private List<PostResponse> build(List<Post> posts, Map<String, User> authors, Set<String> likedPostIds) {
+        return posts.stream()
+                .map(post -> toResponse(post, authors.get(post.getUserId()), likedPostIds.contains(post.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, User> findAuthors(List<Post> posts) {
+        Set<String> authorIds = posts.stream().map(Post::getUserId).collect(Collectors.toSet());
+        return userRepository.findAllById(authorIds)
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    private String etag(List<Post> posts, Map<String, User> authors, Set<String> likedPostIds, String extra) {
+        StringBuilder version = new StringBuilder(extra);
+        for (Post post : posts) {
+            User author = authors.get(post.getUserId());
+            version.append('|').append(post.getId())
+                    .append(':').append(millis(post.getUpdatedAt()))
+                    .append(':').append(likeCounterBuffer.pendingDelta(post.getId()))
+                    .append(':').append(author != null ? millis(author.getUpdatedAt()) : -1)
+                    .append(':').append(likedPostIds.contains(post.getId()) ? 1 : 0);
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(version.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+    }
+
+    private Set<String> findLikedPostIds(List<Post> posts, String currentUserId) {
+        if (currentUserId == null) {
+            return Collections.emptySet();
+        }
+
+        List<String> postIds = posts.stream().map(Post::getId).collect(Collectors.toList());
+        return likedPostIndex.likedAmong(currentUserId, postIds);
+    }
+}
@@ -3,6 +3,7 @@ package com.postit.service;
 import com.postit.dto.CommentResponse;
 import com.postit.dto.CreateCommentRequest;
 import com.postit.dto.CreatePostRequest;
+import com.postit.dto.CursorPage;
 import com.postit.dto.PostResponse;
 import com.postit.event.PostCommentedEvent;
 import com.postit.event.PostLikedEvent;
@@ -14,13 +15,23 @@ import com.postit.model.User;
 import com.postit.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,12 +39,20 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class PostService {
 
+    private static final int MAX_LIKED_STATUS_IDS = 100;
+
     private final PostRepository postRepository;
     private final UserRepository userRepository;
     private final LikeRepository likeRepository;
     private final CommentRepository commentRepository;
     private final FollowRepository followRepository;
     private final NotificationProducer notificationProducer;
+    private final TimelineService timelineService;
+    private final PostHydrator postHydrator;
+    private final LikeCounterBuffer likeCounterBuffer;
+    private final LikedPostIndex likedPostIndex;
+    private final ProfileCache profileCache;
+    private final TransactionTemplate outboxTransaction;
 
     @Transactional
     public PostResponse createPost(CreatePostRequest request, String userId) {
@@ -46,12 +65,35 @@ public class PostService {
                 .build();
 
         post = postRepository.save(post);
+        userRepository.incrementPostsCount(userId, 1);
+        profileCache.evict(userId);
         log.info("Post created by user: {}", user.getUsername());
 
-        return mapToPostResponse(post, user, userId);
+        // Push the new post into the home timelines of the author's followers
+        timelineService.fanOut(post);
+
+        return postHydrator.toResponse(post, user, false);
     }
 
     public Page<PostResponse> getFeed(String currentUserId, Pageable pageable) {
+        return getFeed(currentUserId, pageable, etag -> false);
+    }
+
+    /**
+     * Returns null instead of the page if {@code notModified} accepts its ETag, which is checked
+     * before the posts are hydrated.
+     */
+    public Page<PostResponse> getFeed(String currentUserId, Pageable pageable, Predicate<String> notModified) {
+        // Serve from the precomputed home timeline when possible
+        Optional<Page<String>> timelinePage = timelineService.readPage(currentUserId, pageable);
+        if (timelinePage.isPresent()) {
+            Page<String> postIds = timelinePage.get();
+            List<PostResponse> responses = postHydrator.hydrateIfModified(findLivePostsInOrder(postIds.getContent()),
+                    currentUserId, Long.toString(postIds.getTotalElements()), notModified);
+
+            return responses != null ? new PageImpl<>(responses, pageable, postIds.getTotalElements()) : null;
+        }
+
         // Get a list of users that current user follows
         List<String> followingIds = followRepository.findByFollowerId(currentUserId)
                 .stream()
@@ -69,20 +111,84 @@ public class PostService {
             posts = postRepository.findByUserIdInAndIsDeletedFalseOrderByCreatedAtDesc(followingIds, pageable);
         }
 
-        return posts.map(post -> {
-            User user = userRepository.findById(post.getUserId()).orElse(null);
-            return mapToPostResponse(post, user, currentUserId);
-        });
+        List<PostResponse> responses = postHydrator.hydrateIfModified(posts.getContent(), currentUserId,
+                Long.toString(posts.getTotalElements()), notModified);
+        return responses != null ? new PageImpl<>(responses, pageable, posts.getTotalElements()) : null;
+    }
+
+    public CursorPage<PostResponse> getFeed(String currentUserId, String cursor, int size) {
+        return getFeed(currentUserId, cursor, size, etag -> false);
+    }
+
+    /**
+     * Returns null instead of the page if {@code notModified} accepts its ETag, which is checked
+     * before the posts are hydrated.
+     */
+    public CursorPage<PostResponse> getFeed(String currentUserId, String cursor, int size, Predicate<String> notModified) {
+        size = PageCursor.clampSize(size);
+        PageCursor before = PageCursor.decode(cursor);
+        PageRequest keysetPage = PageCursor.keysetPage(size);
+
+        Optional<List<PageCursor>> slice = timelineService.readSlice(currentUserId, before, keysetPage.getPageSize());
+        if (slice.isPresent()) {
+            List<PageCursor> positions = slice.get();
+            boolean hasNext = positions.size() > size;
+            List<PageCursor> page = hasNext ? positions.subList(0, size) : positions;
+
+            List<String> postIds = page.stream().map(PageCursor::id).collect(Collectors.toList());
+            String nextCursor = hasNext ? page.get(size - 1).encode() : null;
+            List<PostResponse> responses = postHydrator.hydrateIfModified(findLivePostsInOrder(postIds),
+                    currentUserId, String.valueOf(nextCursor), notModified);
+            if (responses == null) {
+                return null;
+            }
+
+            return CursorPage.<PostResponse>builder()
+                    .content(responses)
+                    .nextCursor(nextCursor)
+                    .build();
+        }
+
+        List<String> followingIds = followRepository.findByFollowerId(currentUserId)
+                .stream()
+                .map(follow -> follow.getFollowingId())
+                .collect(Collectors.toList());
+        followingIds.add(currentUserId);
+
+        List<Post> posts = before == null
+                ? postRepository.findByUserIdInAndIsDeletedFalse(followingIds, keysetPage)
+                : postRepository.findByUserIdInAndIsDeletedFalseBefore(followingIds, before.createdAt(), before.objectId(), keysetPage);
+
+        return toCursorPage(posts, size, currentUserId, notModified);
     }
 
     public Page<PostResponse> getUserPosts(String userId, String currentUserId, Pageable pageable) {
         Page<Post> posts = postRepository.findByUserIdAndIsDeletedFalseOrderByCreatedAtDesc(userId, pageable);
-        User user = userRepository.findById(userId).orElse(null);
 
-        return posts.map(post -> mapToPostResponse(post, user, currentUserId));
+        return new PageImpl<>(postHydrator.hydrate(posts.getContent(), currentUserId), pageable, posts.getTotalElements());
+    }
+
+    public CursorPage<PostResponse> getUserPosts(String userId, String currentUserId, String cursor, int size) {
+        size = PageCursor.clampSize(size);
+        PageCursor before = PageCursor.decode(cursor);
+        PageRequest keysetPage = PageCursor.keysetPage(size);
+
+        List<Post> posts = before == null
+                ? postRepository.findByUserIdAndIsDeletedFalse(userId, keysetPage)
+                : postRepository.findByUserIdAndIsDeletedFalseBefore(userId, before.createdAt(), before.objectId(), keysetPage);
+
+        return toCursorPage(posts, size, currentUserId, etag -> false);
     }
 
     public PostResponse getPost(String postId, String currentUserId) {
+        return getPost(postId, currentUserId, etag -> false);
+    }
+
+    /**
+     * Returns null instead of the post if {@code notModified} accepts its ETag, which is checked
+     * before the post is hydrated.
+     */
+    public PostResponse getPost(String postId, String currentUserId, Predicate<String> notModified) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new ResourceNotFoundException("Post not found"));
 
@@ -90,8 +196,8 @@ public class PostService {
             throw new ResourceNotFoundException("Post not found");
         }
 
-        User user = userRepository.findById(post.getUserId()).orElse(null);
-        return mapToPostResponse(post, user, currentUserId);
+        List<PostResponse> responses = postHydrator.hydrateIfModified(List.of(post), currentUserId, "", notModified);
+        return responses != null ? responses.get(0) : null;
     }
 
     @Transactional
@@ -103,8 +209,12 @@ public class PostService {
             throw new RuntimeException("You can only delete your own posts");
         }
 
-        post.setDeleted(true);
-        postRepository.save(post);
+        // Only decrement when this call actually flipped the post to deleted
+        if (postRepository.softDelete(postId)) {
+            userRepository.incrementPostsCount(userId, -1);
+            profileCache.evict(userId);
+            timelineService.remove(post);
+        }
         log.info("Post deleted: {}", postId);
     }
 
@@ -113,46 +223,61 @@ public class PostService {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new ResourceNotFoundException("Post not found"));
 
-        if (!likeRepository.existsByPostIdAndUserId(postId, userId)) {
-            com.postit.model.Like like = com.postit.model.Like.builder()
-                    .postId(postId)
-                    .userId(userId)
-                    .build();
-            likeRepository.save(like);
-
-            // Update like count
-            post.setLikeCount((int) likeRepository.countByPostId(postId));
-            postRepository.save(post);
-
-            // Publish event to Kafka
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-            PostLikedEvent event = PostLikedEvent.builder()
-                .likeId(like.getId())
+        // The like and its outbox event commit together, so neither can exist without the other
+        com.postit.model.Like like = outboxTransaction.execute(status -> {
+            com.postit.model.Like inserted;
+            try {
+                inserted = likeRepository.insert(com.postit.model.Like.builder()
+                        .postId(postId)
+                        .userId(userId)
+                        .build());
+            } catch (DuplicateKeyException e) {
+                // Already liked; the unique (postId, userId) index makes this check race-free
+                status.setRollbackOnly();
+                return null;
+            }
+
+            notificationProducer.publishPostLiked(PostLikedEvent.builder()
+                .eventId("like:" + inserted.getId())
+                .likeId(inserted.getId())
                 .postId(postId)
                 .postOwnerId(post.getUserId())
                 .likeUserId(userId)
                 .likerUsername(user.getUsername())
                 .timestamp(LocalDateTime.now())
-                .build();
+                .build());
+            return inserted;
+        });
+        if (like == null) {
+            return;
+        }
 
-            notificationProducer.publishPostLiked(event);
+        likeCounterBuffer.add(postId, 1);
+        likedPostIndex.recordLike(userId, postId);
 
-            log.info("Post liked: {} by user: {}", postId, userId);
+        log.info("Post liked: {} by user: {}", postId, userId);
+    }
+
+    public Map<String, Boolean> getLikedStatus(List<String> postIds, String userId) {
+        if (postIds.size() > MAX_LIKED_STATUS_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_LIKED_STATUS_IDS + " post ids per request");
         }
+
+        Set<String> liked = likedPostIndex.likedAmong(userId, postIds);
+        Map<String, Boolean> status = new LinkedHashMap<>();
+        postIds.forEach(postId -> status.put(postId, liked.contains(postId)));
+        return status;
     }
 
     @Transactional
     public void unlikePost(String postId, String userId) {
-        if (likeRepository.existsByPostIdAndUserId(postId, userId)) {
-            likeRepository.deleteByPostIdAndUserId(postId, userId);
-
-            // Update like count
-            Post post = postRepository.findById(postId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Post not found"));
-            post.setLikeCount((int) likeRepository.countByPostId(postId));
-            postRepository.save(post);
+        // Only decrement when this call actually removed the like
+        if (likeRepository.deleteByPostIdAndUserId(postId, userId) > 0) {
+            likeCounterBuffer.add(postId, -1);
+            likedPostIndex.recordUnlike(userId, postId);
 
             log.info("Post unliked: {} by user: {}", postId, userId);
         }
@@ -166,30 +291,29 @@ public class PostService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        Comment comment = Comment.builder()
-                .postId(postId)
-                .userId(userId)
-                .content(request.getContent())
-                .build();
-
-        comment = commentRepository.save(comment);
-
-        // Update comment count
-        post.setCommentCount((int) commentRepository.countByPostIdAndIsDeletedFalse(postId));
-        postRepository.save(post);
+        // The comment, the post's count and the outbox event commit together
+        Comment comment = outboxTransaction.execute(status -> {
+            Comment saved = commentRepository.save(Comment.builder()
+                    .postId(postId)
+                    .userId(userId)
+                    .content(request.getContent())
+                    .build());
 
-        // Publish event to Kafka
-        PostCommentedEvent event = PostCommentedEvent.builder()
-            .commentId(comment.getId())
-            .postId(postId)
-            .postOwnerId(post.getUserId())
-            .commentUserId(userId)
-            .commenterUsername(user.getUsername())
-            .commentContent(request.getContent())
-            .timestamp(LocalDateTime.now())
-            .build();
+            // Update comment count
+            postRepository.incrementCommentCount(postId, 1);
 
-        notificationProducer.publishPostCommented(event);
+            notificationProducer.publishPostCommented(PostCommentedEvent.builder()
+                .eventId("comment:" + saved.getId())
+                .commentId(saved.getId())
+                .postId(postId)
+                .postOwnerId(post.getUserId())
+                .commentUserId(userId)
+                .commenterUsername(user.getUsername())
+                .commentContent(request.getContent())
+                .timestamp(LocalDateTime.now())
+                .build());
+            return saved;
+        });
 
         log.info("Comment added to post: {} by user: {}", postId, user.getUsername());
 
@@ -199,10 +323,30 @@ public class PostService {
     public Page<CommentResponse> getComments(String postId, Pageable pageable) {
         Page<Comment> comments = commentRepository.findByPostIdAndIsDeletedFalseOrderByCreatedAtDesc(postId, pageable);
 
-        return comments.map(comment -> {
-            User user = userRepository.findById(comment.getUserId()).orElse(null);
-            return mapToCommentResponse(comment, user);
-        });
+        Map<String, User> authors = findCommentAuthors(comments.getContent());
+        return comments.map(comment -> mapToCommentResponse(comment, authors.get(comment.getUserId())));
+    }
+
+    public CursorPage<CommentResponse> getComments(String postId, String cursor, int size) {
+        size = PageCursor.clampSize(size);
+        PageCursor before = PageCursor.decode(cursor);
+        PageRequest keysetPage = PageCursor.keysetPage(size);
+
+        List<Comment> comments = before == null
+                ? commentRepository.findByPostIdAndIsDeletedFalse(postId, keysetPage)
+                : commentRepository.findByPostIdAndIsDeletedFalseBefore(postId, before.createdAt(), before.objectId(), keysetPage);
+
+        boolean hasNext = comments.size() > size;
+        List<Comment> page = hasNext ? comments.subList(0, size) : comments;
+        Comment last = hasNext ? page.get(size - 1) : null;
+
+        Map<String, User> authors = findCommentAuthors(page);
+        return CursorPage.<CommentResponse>builder()
+                .content(page.stream()
+                        .map(comment -> mapToCommentResponse(comment, authors.get(comment.getUserId())))
+                        .collect(Collectors.toList()))
+                .nextCursor(last != null ? PageCursor.of(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
     }
 
     @Transactional
@@ -214,35 +358,49 @@ public class PostService {
             throw new RuntimeException("You can only delete your own comments");
         }
 
-        comment.setDeleted(true);
-        commentRepository.save(comment);
-
-        // Update comment count
-        Post post = postRepository.findById(comment.getPostId())
-                .orElseThrow(() -> new ResourceNotFoundException("Post not found"));
-        post.setCommentCount((int) commentRepository.countByPostIdAndIsDeletedFalse(comment.getPostId()));
-        postRepository.save(post);
+        // Only decrement when this call actually flipped the comment to deleted
+        if (commentRepository.softDelete(commentId)) {
+            postRepository.incrementCommentCount(comment.getPostId(), -1);
+        }
 
         log.info("Comment deleted: {}", commentId);
     }
 
-    private PostResponse mapToPostResponse(Post post, User user, String currentUserId) {
-        boolean likedByCurrentUser = false;
-        if (currentUserId != null) {
-            likedByCurrentUser = likeRepository.existsByPostIdAndUserId(post.getId(), currentUserId);
+    // One $in for every distinct commenter on the page; missing users map to null
+    private Map<String, User> findCommentAuthors(List<Comment> comments) {
+        Set<String> authorIds = comments.stream().map(Comment::getUserId).collect(Collectors.toSet());
+        return userRepository.findAllById(authorIds)
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    // Loads posts by id, keeping the given order and dropping any that were deleted since
+    private List<Post> findLivePostsInOrder(List<String> postIds) {
+        Map<String, Post> postsById = postRepository.findAllById(postIds)
+                .stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+
+        return postIds.stream()
+                .map(postsById::get)
+                .filter(post -> post != null && !post.isDeleted())
+                .collect(Collectors.toList());
+    }
+
+    private CursorPage<PostResponse> toCursorPage(List<Post> posts, int size, String currentUserId,
+                                                  Predicate<String> notModified) {
+        boolean hasNext = posts.size() > size;
+        List<Post> page = hasNext ? posts.subList(0, size) : posts;
+        Post last = hasNext ? page.get(size - 1) : null;
+        String nextCursor = last != null ? PageCursor.of(last.getCreatedAt(), last.getId()).encode() : null;
+
+        List<PostResponse> responses = postHydrator.hydrateIfModified(page, currentUserId, String.valueOf(nextCursor), notModified);
+        if (responses == null) {
+            return null;
         }
 
-        return PostResponse.builder()
-                .id(post.getId())
-                .userId(post.getUserId())
-                .username(user != null ? user.getUsername() : "Unknown")
-                .displayName(user != null ? user.getDisplayName() : "Unknown")
-                .content(post.getContent())
-                .likeCount(post.getLikeCount())
-                .commentCount(post.getCommentCount())
-                .likedByCurrentUser(likedByCurrentUser)
-                .createdAt(post.getCreatedAt())
-                .updatedAt(post.getUpdatedAt())
+        return CursorPage.<PostResponse>builder()
+                .content(responses)
+                .nextCursor(nextCursor)
                 .build();
     }
 
@@ -0,0 +1,216 @@
+package com.postit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.postit.dto.UserProfileResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Two-level cache of viewer-independent user profiles: a bounded in-process L1 in front of a
+ * Redis L2 shared by all instances. Profiles are keyed by user id, with a separate
+ * username to id mapping. Evictions are broadcast over Redis pub/sub so every L1 drops its copy.
+ * Each eviction also bumps a per-user generation in Redis, and a profile loaded from Mongo is only
+ * cached if the generation it was loaded under is still current.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProfileCache {
+
+    private static final String PROFILE_KEY_PREFIX = "profile:";
+    private static final String USERNAME_KEY_PREFIX = "profile:username:";
+    private static final String GENERATION_KEY_PREFIX = "profile:gen:";
+    private static final String INVALIDATION_CHANNEL = "profile:invalidate";
+
+    // Caches the profile in KEYS[2] for ARGV[3] seconds unless the generation in KEYS[1] has moved
+    // on from ARGV[1], an empty string standing for no generation yet
+    private static final RedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>(
+            "local generation = redis.call('GET', KEYS[1]) or ''\n" +
+            "if generation ~= ARGV[1] then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "redis.call('SET', KEYS[2], ARGV[2], 'EX', ARGV[3])\n" +
+            "return 1",
+            Long.class);
+
+    // For each generation/profile key pair in KEYS, bumps the generation (kept for ARGV[1] seconds)
+    // before dropping the profile, so a fill that has not yet checked the generation is refused
+    // and one that already has is deleted
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS, 2 do\n" +
+            "  redis.call('INCR', KEYS[i])\n" +
+            "  redis.call('EXPIRE', KEYS[i], ARGV[1])\n" +
+            "  redis.call('DEL', KEYS[i + 1])\n" +
+            "end\n" +
+            "return #KEYS / 2",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${profiles.cache.l1.max-size:10000}")
+    private long l1MaxSize;
+
+    @Value("${profiles.cache.l1.ttl-seconds:60}")
+    private long l1TtlSeconds;
+
+    @Value("${profiles.cache.l2.ttl-seconds:600}")
+    private long l2TtlSeconds;
+
+    private Cache<String, UserProfileResponse> profiles;
+    private Cache<String, String> userIds;
+
+    @PostConstruct
+    void init() {
+        profiles = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterWrite(Duration.ofSeconds(l1TtlSeconds))
+                .recordStats()
+                .build();
+        // Usernames never change, so this mapping needs no invalidation, only a size bound
+        userIds = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "profiles.l1");
+        CaffeineCacheMetrics.monitor(meterRegistry, userIds, "profiles.l1.usernames");
+
+        listenerContainer.addMessageListener(
+                (message, pattern) -> profiles.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public UserProfileResponse get(String userId, Supplier<UserProfileResponse> loader) {
+        UserProfileResponse profile = profiles.getIfPresent(userId);
+        if (profile != null) {
+            return profile;
+        }
+
+        L2Entry cached = readL2(userId);
+        if (cached.profile() != null) {
+            profiles.put(userId, cached.profile());
+            return cached.profile();
+        }
+
+        // An evict landing while the loader reads Mongo bumps the generation, and the possibly
+        // stale profile is then returned to this caller only
+        profile = loader.get();
+        if (writeL2(userId, cached.generation(), profile)) {
+            profiles.put(userId, profile);
+        }
+        return profile;
+    }
+
+    public String resolveUserId(String username, Supplier<String> loader) {
+        String userId = userIds.getIfPresent(username);
+        if (userId != null) {
+            return userId;
+        }
+
+        try {
+            userId = redisTemplate.opsForValue().get(USERNAME_KEY_PREFIX + username);
+        } catch (DataAccessException e) {
+            log.debug("Profile L2 unavailable for username {}: {}", username, e.getMessage());
+        }
+        if (userId == null) {
+            userId = loader.get();
+            try {
+                redisTemplate.opsForValue().set(USERNAME_KEY_PREFIX + username, userId, Duration.ofDays(1));
+            } catch (DataAccessException e) {
+                log.debug("Could not cache user id for username {}: {}", username, e.getMessage());
+            }
+        }
+        userIds.put(username, userId);
+        return userId;
+    }
+
+    /**
+     * Drops the cached profiles of the given users everywhere, e.g. after a follow or a new post.
+     */
+    public void evict(String... userIdsToEvict) {
+        List<String> ids = List.of(userIdsToEvict);
+        try {
+            List<String> keys = ids.stream()
+                    .flatMap(id -> Stream.of(GENERATION_KEY_PREFIX + id, PROFILE_KEY_PREFIX + id))
+                    .toList();
+            redisTemplate.execute(EVICT_SCRIPT, keys, Long.toString(l2TtlSeconds));
+            ids.forEach(id -> redisTemplate.convertAndSend(INVALIDATION_CHANNEL, id));
+        } catch (DataAccessException e) {
+            // Other instances keep their L1 copy until it expires
+            log.warn("Could not broadcast profile invalidation for {}: {}", ids, e.getMessage());
+        }
+        // After the generation bump, so a concurrent fill on this instance cannot re-add a stale copy
+        ids.forEach(profiles::invalidate);
+    }
+
+    // The cached profile, if any, and the generation it was read under: empty if the user has
+    // none yet, null if Redis could not be read
+    private record L2Entry(UserProfileResponse profile, String generation) {
+    }
+
+    private L2Entry readL2(String userId) {
+        List<String> values;
+        try {
+            values = redisTemplate.opsForValue()
+                    .multiGet(List.of(PROFILE_KEY_PREFIX + userId, GENERATION_KEY_PREFIX + userId));
+        } catch (DataAccessException e) {
+            log.debug("Profile L2 read failed for user {}: {}", userId, e.getMessage());
+            return new L2Entry(null, null);
+        }
+        if (values == null) {
+            return new L2Entry(null, null);
+        }
+
+        String json = values.get(0);
+        String generation = values.get(1) != null ? values.get(1) : "";
+        meterRegistry.counter("profiles.l2.requests", "result", json != null ? "hit" : "miss").increment();
+        try {
+            return new L2Entry(json != null ? objectMapper.readValue(json, UserProfileResponse.class) : null, generation);
+        } catch (JsonProcessingException e) {
+            log.debug("Profile L2 entry unreadable for user {}: {}", userId, e.getMessage());
+            return new L2Entry(null, generation);
+        }
+    }
+
+    /**
+     * Returns false only if an evict has moved the generation on since {@code generation} was
+     * read. When Redis is unavailable the profile may still go into L1, as no evict can be seen.
+     */
+    private boolean writeL2(String userId, String generation, UserProfileResponse profile) {
+        if (generation == null) {
+            return true;
+        }
+        try {
+            Long written = redisTemplate.execute(FILL_SCRIPT,
+                    List.of(GENERATION_KEY_PREFIX + userId, PROFILE_KEY_PREFIX + userId),
+                    generation, objectMapper.writeValueAsString(profile), Long.toString(l2TtlSeconds));
+            return written == null || written == 1;
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.debug("Profile L2 write failed for user {}: {}", userId, e.getMessage());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.postit.service;
+
+import com.postit.security.AuthenticatedUser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Opaque refresh tokens held in Redis, one hash per token under the SHA-256 of the token, so a
+ * refresh is a single HGETALL and expired tokens disappear with their TTL. Each user also has a
+ * sorted set of their token keys, one per signed-in device and scored by expiry, so all of them
+ * can be revoked at once. Tokens start with the user's id, which every key of that user carries
+ * as a hash tag: the keys share a cluster slot and each script declares every key it touches.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenStore {
+
+    private static final String KEY_PREFIX = "refresh:";
+    private static final String USER_KEY_SUFFIX = ":tokens";
+    // Not in the base64url alphabet or in user ids
+    private static final char USER_ID_SEPARATOR = '.';
+    private static final int TOKEN_BYTES = 32;
+
+    // Stores the token and adds it to the user's set, dropping entries of tokens that have expired
+    private static final RedisScript<Long> ISSUE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HSET', KEYS[1], 'userId', ARGV[1], 'username', ARGV[2], 'roles', ARGV[3])\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4])\n" +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', ARGV[6])\n" +
+            "redis.call('ZADD', KEYS[2], ARGV[5], KEYS[1])\n" +
+            "redis.call('PEXPIRE', KEYS[2], ARGV[4])\n" +
+            "return 1",
+            Long.class);
+
+    private static final RedisScript<Long> REVOKE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('DEL', KEYS[1]) == 0 then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "redis.call('ZREM', KEYS[2], KEYS[1])\n" +
+            "return 1",
+            Long.class);
+
+    // Deletes the token keys in KEYS[2..] and their entries in the user's set (KEYS[1])
+    private static final RedisScript<Long> REVOKE_ALL_SCRIPT = new DefaultRedisScript<>(
+            "local revoked = 0\n" +
+            "for i = 2, #KEYS do\n" +
+            "  revoked = revoked + redis.call('DEL', KEYS[i])\n" +
+            "  redis.call('ZREM', KEYS[1], KEYS[i])\n" +
+            "end\n" +
+            "if redis.call('ZCARD', KEYS[1]) == 0 then\n" +
+            "  redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return revoked",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpiration;
+
+    public String issue(AuthenticatedUser user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = user.getId() + USER_ID_SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        long now = System.currentTimeMillis();
+        redisTemplate.execute(ISSUE_SCRIPT,
+                List.of(tokenKey(user.getId(), token), userKey(user.getId())),
+                user.getId(), user.getUsername(), String.join(",", user.getRoles()),
+                Long.toString(refreshExpiration), Long.toString(now + refreshExpiration), Long.toString(now));
+        return token;
+    }
+
+    /**
+     * Returns the user the token was issued to, or empty if it is unknown, expired or revoked.
+     */
+    public Optional<AuthenticatedUser> find(String token) {
+        String userId = userIdOf(token);
+        if (userId == null) {
+            return Optional.empty();
+        }
+
+        // The key covers the whole token, so an edited user id prefix just misses
+        Map<Object, Object> entry = redisTemplate.opsForHash().entries(tokenKey(userId, token));
+        if (entry.isEmpty()) {
+            return Optional.empty();
+        }
+        String roles = (String) entry.get("roles");
+        return Optional.of(AuthenticatedUser.fromToken(
+                (String) entry.get("userId"),
+                (String) entry.get("username"),
+                roles == null || roles.isEmpty() ? List.of() : Arrays.asList(roles.split(","))));
+    }
+
+    public void revoke(String token) {
+        String userId = userIdOf(token);
+        if (userId != null) {
+            redisTemplate.execute(REVOKE_SCRIPT, List.of(tokenKey(userId, token), userKey(userId)));
+        }
+    }
+
+    /**
+     * Signs the user out on every device. Tokens issued while this runs are picked up by the next
+     * round, until the user's set is empty.
+     */
+    public void revokeAll(String userId) {
+        String setKey = userKey(userId);
+        long revoked = 0;
+        Set<String> tokenKeys;
+        while ((tokenKeys = redisTemplate.opsForZSet().range(setKey, 0, -1)) != null && !tokenKeys.isEmpty()) {
+            List<String> keys = new ArrayList<>();
+            keys.add(setKey);
+            keys.addAll(tokenKeys);
+            Long result = redisTemplate.execute(REVOKE_ALL_SCRIPT, keys);
+            revoked += result != null ? result : 0;
+        }
+        log.info("Revoked {} refresh tokens for user {}", revoked, userId);
+    }
+
+    // The hash tag in braces puts all of a user's keys in one cluster slot
+    private static String tokenKey(String userId, String token) {
+        return KEY_PREFIX + "{" + userId + "}:" + hash(token);
+    }
+
+    private static String userKey(String userId) {
+        return KEY_PREFIX + "{" + userId + "}" + USER_KEY_SUFFIX;
+    }
+
+    // Null for blank tokens and those issued before tokens carried the user id
+    private static String userIdOf(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        int separator = token.indexOf(USER_ID_SEPARATOR);
+        return separator > 0 ? token.substring(0, separator) : null;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.postit.service;
+
+import com.postit.model.Follow;
+import com.postit.model.Post;
+import com.postit.repository.FollowRepository;
+import com.postit.repository.PostRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed home timelines, stored in Redis as one sorted set of post ids per user
+ * (scored by creation time and capped at {@code feed.timeline.max-size} entries).
+ * Authors with more followers than {@code feed.fan-out.follower-threshold} are not fanned out;
+ * their recent posts are pulled from Mongo and merged in when a timeline is read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TimelineService {
+
+    private static final String TIMELINE_KEY_PREFIX = "timeline:";
+    private static final String FOLLOWING_KEY_SUFFIX = ":following";
+    private static final String PULL_AUTHORS_KEY = "timeline:pull-authors";
+
+    // Members are ObjectIds, so an empty string can't clash; it keeps the timeline of a user with
+    // nothing to show warm. Its negative score keeps it out of every read, which only looks at
+    // scores from POST_SCORE_MIN, and makes it the first entry trimmed once the timeline fills up.
+    private static final String EMPTY_MARKER = "";
+    private static final double EMPTY_MARKER_SCORE = -1;
+    private static final double POST_SCORE_MIN = 0;
+
+    // Pushes a post into every timeline in KEYS that already exists and trims it to the cap.
+    // Cold timelines are skipped on purpose: they are rebuilt from Mongo on their next read.
+    private static final RedisScript<Long> FAN_OUT_SCRIPT = new DefaultRedisScript<>(
+            "local pushed = 0\n" +
+            "for _, key in ipairs(KEYS) do\n" +
+            "  if redis.call('EXISTS', key) == 1 then\n" +
+            "    redis.call('ZADD', key, ARGV[1], ARGV[2])\n" +
+            "    redis.call('ZREMRANGEBYRANK', key, 0, -(tonumber(ARGV[3]) + 1))\n" +
+            "    pushed = pushed + 1\n" +
+            "  end\n" +
+            "end\n" +
+            "return pushed",
+            Long.class);
+
+    // Removes a post from every timeline in KEYS; the empty marker keeps an emptied timeline warm
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>(
+            "local removed = 0\n" +
+            "for _, key in ipairs(KEYS) do\n" +
+            "  removed = removed + redis.call('ZREM', key, ARGV[1])\n" +
+            "end\n" +
+            "return removed",
+            Long.class);
+
+    // Adds the score/member pairs in ARGV[2..] to the timeline in KEYS[1] and trims it to ARGV[1],
+    // unless the timeline has gone cold again in the meantime
+    private static final RedisScript<Long> ADD_IF_WARM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "local added = 0\n" +
+            "for i = 2, #ARGV, 2 do\n" +
+            "  added = added + redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -(tonumber(ARGV[1]) + 1))\n" +
+            "return added",
+            Long.class);
+
+    // How far before a rebuild's read its re-check looks, covering posts stamped before the read
+    // but only visible to it after
+    private static final Duration REBUILD_RECHECK_MARGIN = Duration.ofMinutes(1);
+
+    private final StringRedisTemplate redisTemplate;
+    private final FollowRepository followRepository;
+    private final PostRepository postRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${feed.timeline.max-size:800}")
+    private int maxSize;
+
+    @Value("${feed.timeline.ttl-days:7}")
+    private long ttlDays;
+
+    @Value("${feed.timeline.fan-out-batch-size:500}")
+    private int fanOutBatchSize;
+
+    @Value("${feed.fan-out.follower-threshold:10000}")
+    private long followerThreshold;
+
+    @Value("${feed.pull.window-hours:72}")
+    private long pullWindowHours;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("feed.pull.authors", this, TimelineService::countPullAuthors)
+                .description("Authors whose posts are merged into timelines at read time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pushes a freshly created post into the author's own timeline and, unless the author is
+     * above the follower threshold, into the timeline of each follower.
+     */
+    public void fanOut(Post post) {
+        List<String> keys = new ArrayList<>();
+        keys.add(timelineKey(post.getUserId()));
+
+        long followers = followRepository.countByFollowingId(post.getUserId());
+        if (followers > followerThreshold) {
+            markPullAuthor(post.getUserId());
+            meterRegistry.counter("feed.fanout.posts", "path", "pull").increment();
+        } else {
+            followRepository.findByFollowingId(post.getUserId())
+                    .forEach(follow -> keys.add(timelineKey(follow.getFollowerId())));
+            meterRegistry.counter("feed.fanout.posts", "path", "push").increment();
+        }
+
+        String score = String.valueOf(toScore(post.getCreatedAt()));
+        String cap = String.valueOf(maxSize);
+
+        try {
+            long pushed = 0;
+            for (int from = 0; from < keys.size(); from += fanOutBatchSize) {
+                List<String> batch = keys.subList(from, Math.min(from + fanOutBatchSize, keys.size()));
+                Long result = redisTemplate.execute(FAN_OUT_SCRIPT, batch, score, post.getId(), cap);
+                pushed += result != null ? result : 0;
+            }
+            log.debug("Post {} fanned out to {} of {} timelines", post.getId(), pushed, keys.size());
+        } catch (DataAccessException e) {
+            // Timelines that missed the push are stale until they expire or get invalidated
+            log.warn("Could not fan out post {}: {}", post.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Reads one page of post ids from the user's timeline, rebuilding it first if it is cold.
+     * Returns empty when the page lies beyond the timeline cap or Redis is unavailable,
+     * in which case the caller should fall back to querying Mongo directly.
+     */
+    public Optional<Page<String>> readPage(String userId, Pageable pageable) {
+        if (pageable.getOffset() + pageable.getPageSize() > maxSize) {
+            return Optional.empty();
+        }
+
+        String key = timelineKey(userId);
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                rebuild(userId);
+            }
+
+            Set<String> pullAuthors = redisTemplate.opsForSet().intersect(followingKey(userId), PULL_AUTHORS_KEY);
+            if (pullAuthors == null || pullAuthors.isEmpty()) {
+                return Optional.of(readPushedPage(key, pageable));
+            }
+            return Optional.of(readMergedPage(key, pullAuthors, pageable));
+        } catch (DataAccessException e) {
+            log.warn("Timeline read failed for user {}, falling back to Mongo: {}", userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Page<String> readPushedPage(String key, Pageable pageable) {
+        Set<String> ids = redisTemplate.opsForZSet().reverseRangeByScore(
+                key, POST_SCORE_MIN, Double.POSITIVE_INFINITY, pageable.getOffset(), pageable.getPageSize());
+        Long total = redisTemplate.opsForZSet().count(key, POST_SCORE_MIN, Double.POSITIVE_INFINITY);
+
+        List<String> postIds = ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+        return new PageImpl<>(postIds, pageable, total != null ? total : 0);
+    }
+
+    // Merges the pushed timeline with the recent posts of followed pull-path authors.
+    // Both sides are read from the top so the merge only ever touches offset + size entries per side.
+    private Page<String> readMergedPage(String key, Set<String> pullAuthors, Pageable pageable) {
+        int needed = (int) (pageable.getOffset() + pageable.getPageSize());
+
+        Map<String, Double> scores = new HashMap<>();
+        Set<ZSetOperations.TypedTuple<String>> pushed = redisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                key, POST_SCORE_MIN, Double.POSITIVE_INFINITY, 0, needed);
+        if (pushed != null) {
+            pushed.forEach(entry -> scores.put(entry.getValue(), entry.getScore()));
+        }
+
+        LocalDateTime since = LocalDateTime.now().minusHours(pullWindowHours);
+        List<Post> pulled = postRepository.findTimelineEntriesByUserIdInAndCreatedAtAfter(
+                pullAuthors, since, PageRequest.of(0, needed, Sort.by(Sort.Direction.DESC, "createdAt")));
+        pulled.forEach(post -> scores.putIfAbsent(post.getId(), (double) toScore(post.getCreatedAt())));
+
+        // Pulled posts that were pushed before their author crossed the threshold are in both
+        long pulledOnly = 0;
+        if (!pulled.isEmpty()) {
+            List<Double> pushedScores = redisTemplate.opsForZSet().score(key, pulled.stream().map(Post::getId).toArray());
+            pulledOnly = pushedScores != null ? pushedScores.stream().filter(Objects::isNull).count() : pulled.size();
+        }
+
+        List<String> merged = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<String, Double>comparingByKey().reversed()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        int to = Math.min(from + pageable.getPageSize(), merged.size());
+
+        Long pushedTotal = redisTemplate.opsForZSet().count(key, POST_SCORE_MIN, Double.POSITIVE_INFINITY);
+        long total = (pushedTotal != null ? pushedTotal : 0) + pulledOnly;
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, to)), pageable, total);
+    }
+
+    /**
+     * Reads up to {@code limit} timeline positions strictly after {@code before} (or from the top
+     * when it is null). Returns empty when the slice runs past the oldest entry the capped timeline
+     * still holds or Redis is unavailable, so the caller should continue from Mongo instead.
+     */
+    public Optional<List<PageCursor>> readSlice(String userId, PageCursor before, int limit) {
+        String key = timelineKey(userId);
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                rebuild(userId);
+            }
+
+            List<PageCursor> slice = readPushedSlice(key, before, limit);
+            Long total = redisTemplate.opsForZSet().count(key, POST_SCORE_MIN, Double.POSITIVE_INFINITY);
+            if (slice.size() < limit && total != null && total >= maxSize) {
+                return Optional.empty();
+            }
+
+            Set<String> pullAuthors = redisTemplate.opsForSet().intersect(followingKey(userId), PULL_AUTHORS_KEY);
+            if (pullAuthors != null && !pullAuthors.isEmpty()) {
+                slice = mergePulledSlice(slice, pullAuthors, before, limit);
+            }
+            return Optional.of(slice);
+        } catch (DataAccessException e) {
+            log.warn("Timeline read failed for user {}, falling back to Mongo: {}", userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private List<PageCursor> readPushedSlice(String key, PageCursor before, int limit) {
+        Set<ZSetOperations.TypedTuple<String>> tuples;
+        if (before == null) {
+            tuples = redisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                    key, POST_SCORE_MIN, Double.POSITIVE_INFINITY, 0, limit);
+        } else {
+            // Over-fetch by the entries sharing the cursor's score; the ones at or after the cursor are skipped below
+            Long ties = redisTemplate.opsForZSet().count(key, before.timestamp(), before.timestamp());
+            tuples = redisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                    key, POST_SCORE_MIN, before.timestamp(), 0, limit + (ties != null ? ties : 0));
+        }
+
+        List<PageCursor> slice = new ArrayList<>();
+        if (tuples == null) {
+            return slice;
+        }
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            PageCursor position = new PageCursor(tuple.getScore().longValue(), tuple.getValue());
+            if (before != null && PageCursor.NEWEST_FIRST.compare(position, before) <= 0) {
+                continue;
+            }
+            slice.add(position);
+            if (slice.size() == limit) {
+                break;
+            }
+        }
+        return slice;
+    }
+
+    private List<PageCursor> mergePulledSlice(List<PageCursor> pushed, Set<String> pullAuthors, PageCursor before, int limit) {
+        LocalDateTime since = LocalDateTime.now().minusHours(pullWindowHours);
+        PageRequest firstN = PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        List<Post> pulled = before == null
+                ? postRepository.findTimelineEntriesByUserIdInAndCreatedAtAfter(pullAuthors, since, firstN)
+                : postRepository.findTimelineEntriesBefore(pullAuthors, since, before.createdAt(), before.objectId(), firstN);
+
+        Map<String, PageCursor> merged = new HashMap<>();
+        pushed.forEach(position -> merged.put(position.id(), position));
+        pulled.forEach(post -> merged.putIfAbsent(post.getId(), new PageCursor(toScore(post.getCreatedAt()), post.getId())));
+
+        return merged.values().stream()
+                .sorted(PageCursor.NEWEST_FIRST)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Recomputes the user's timeline from the most recent posts of everyone they follow. The new
+     * timeline is written under a temporary key and renamed into place, so readers never see it
+     * half built. Fan-out skips the timeline while it is cold, so posts created around the read
+     * are looked up again once it is in place.
+     */
+    public void rebuild(String userId) {
+        List<String> authorIds = followRepository.findByFollowerId(userId)
+                .stream()
+                .map(Follow::getFollowingId)
+                .collect(Collectors.toList());
+        authorIds.add(userId);
+
+        LocalDateTime readAt = LocalDateTime.now();
+        List<Post> posts = postRepository.findTimelineEntriesByUserIdIn(
+                authorIds, PageRequest.of(0, maxSize, Sort.by(Sort.Direction.DESC, "createdAt")));
+
+        Set<ZSetOperations.TypedTuple<String>> entries = new HashSet<>();
+        for (Post post : posts) {
+            entries.add(ZSetOperations.TypedTuple.of(post.getId(), (double) toScore(post.getCreatedAt())));
+        }
+        // Without it, an empty timeline would have no key and be rebuilt on every read
+        entries.add(ZSetOperations.TypedTuple.of(EMPTY_MARKER, EMPTY_MARKER_SCORE));
+
+        String key = timelineKey(userId);
+        String followingKey = followingKey(userId);
+        // The followed-author set lets reads find pull-path authors with a single SINTER
+        replace(followingKey, tempKey -> redisTemplate.opsForSet().add(tempKey, authorIds.toArray(new String[0])));
+        replace(key, tempKey -> redisTemplate.opsForZSet().add(tempKey, entries));
+
+        int missed = addMissedPosts(key, authorIds, readAt);
+        log.debug("Rebuilt timeline for user {} with {} posts, {} added after the read", userId, posts.size(), missed);
+    }
+
+    // Fills a temporary key and renames it over key, which takes its contents and TTL in one step
+    private void replace(String key, Consumer<String> fill) {
+        String tempKey = key + ":rebuild:" + UUID.randomUUID();
+        fill.accept(tempKey);
+        redisTemplate.expire(tempKey, Duration.ofDays(ttlDays));
+        redisTemplate.rename(tempKey, key);
+    }
+
+    // Adds posts created since shortly before the rebuild's read, which fan-out may have skipped
+    private int addMissedPosts(String key, List<String> authorIds, LocalDateTime readAt) {
+        List<Post> recent = postRepository.findTimelineEntriesByUserIdInAndCreatedAtAfter(
+                authorIds, readAt.minus(REBUILD_RECHECK_MARGIN),
+                PageRequest.of(0, maxSize, Sort.by(Sort.Direction.DESC, "createdAt")));
+        if (recent.isEmpty()) {
+            return 0;
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(maxSize));
+        for (Post post : recent) {
+            args.add(String.valueOf(toScore(post.getCreatedAt())));
+            args.add(post.getId());
+        }
+        Long added = redisTemplate.execute(ADD_IF_WARM_SCRIPT, List.of(key), args.toArray());
+        return added != null ? added.intValue() : 0;
+    }
+
+    /**
+     * Removes a deleted post from the author's timeline and those of their followers, so pages
+     * don't come back short. Pull-path posts live in no follower timeline and are filtered at read.
+     */
+    public void remove(Post post) {
+        List<String> keys = new ArrayList<>();
+        keys.add(timelineKey(post.getUserId()));
+        if (!isPullAuthor(post.getUserId())) {
+            followRepository.findByFollowingId(post.getUserId())
+                    .forEach(follow -> keys.add(timelineKey(follow.getFollowerId())));
+        }
+
+        try {
+            long removed = 0;
+            for (int from = 0; from < keys.size(); from += fanOutBatchSize) {
+                List<String> batch = keys.subList(from, Math.min(from + fanOutBatchSize, keys.size()));
+                Long result = redisTemplate.execute(REMOVE_SCRIPT, batch, post.getId());
+                removed += result != null ? result : 0;
+            }
+            log.debug("Post {} removed from {} of {} timelines", post.getId(), removed, keys.size());
+        } catch (DataAccessException e) {
+            // Reads skip deleted posts, so the timelines that kept it only serve a short page
+            log.warn("Could not remove post {} from timelines: {}", post.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the user's timeline so it is rebuilt on the next read, e.g. after a follow or unfollow.
+     */
+    public void invalidate(String userId) {
+        try {
+            redisTemplate.delete(List.of(timelineKey(userId), followingKey(userId)));
+        } catch (DataAccessException e) {
+            log.warn("Could not invalidate timeline for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    // Authors stay on the pull path once they cross the threshold, so none of their
+    // posts can fall between the two paths if their follower count later dips
+    private void markPullAuthor(String authorId) {
+        try {
+            redisTemplate.opsForSet().add(PULL_AUTHORS_KEY, authorId);
+        } catch (DataAccessException e) {
+            log.warn("Could not mark author {} for read-time merge: {}", authorId, e.getMessage());
+        }
+    }
+
+    private boolean isPullAuthor(String authorId) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(PULL_AUTHORS_KEY, authorId));
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    private double countPullAuthors() {
+        try {
+            Long size = redisTemplate.opsForSet().size(PULL_AUTHORS_KEY);
+            return size != null ? size : 0;
+        } catch (DataAccessException e) {
+            return Double.NaN;
+        }
+    }
+
+    static long toScore(LocalDateTime createdAt) {
+        LocalDateTime time = createdAt != null ? createdAt : LocalDateTime.now();
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private String timelineKey(String userId) {
+        return TIMELINE_KEY_PREFIX + userId;
+    }
+
+    private String followingKey(String userId) {
+        return TIMELINE_KEY_PREFIX + userId + FOLLOWING_KEY_SUFFIX;
+    }
+}
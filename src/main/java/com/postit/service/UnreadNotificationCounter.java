@@ -0,0 +1,111 @@
+package com.postit.service;
+
+import com.postit.repository.NotificationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Per-user unread notification count in Redis, so the unread badge is a single GET.
+ * Counts are loaded lazily from Mongo and then adjusted by the consumer and by read actions.
+ * Whenever an adjustment can't be applied exactly, the key is dropped and recounted on the next read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UnreadNotificationCounter {
+
+    private static final String KEY_PREFIX = "notifications:unread:";
+
+    // While a read is counting in Mongo, the key holds this prefix plus a token instead of a count
+    private static final String WARMING_PREFIX = "~";
+    private static final Duration WARMING_TIMEOUT = Duration.ofSeconds(30);
+
+    // Adjusts only warm counters, never going below zero; a cold counter is recounted on its next read.
+    // A change that lands while a count is in flight may be missing from it, so the warm-up is dropped.
+    private static final RedisScript<Long> ADD_IF_WARM_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1])\n" +
+            "if not current then\n" +
+            "  return -1\n" +
+            "end\n" +
+            "if string.sub(current, 1, 1) == '~' then\n" +
+            "  redis.call('DEL', KEYS[1])\n" +
+            "  return -1\n" +
+            "end\n" +
+            "local value = redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
+            "if value < 0 then\n" +
+            "  redis.call('INCRBY', KEYS[1], -value)\n" +
+            "  return 0\n" +
+            "end\n" +
+            "return value",
+            Long.class);
+
+    // Stores the count only if the key still holds this read's warming token
+    private static final RedisScript<Long> FINISH_WARMING_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final NotificationRepository notificationRepository;
+
+    @Value("${notifications.unread.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    public long get(String userId) {
+        String key = KEY_PREFIX + userId;
+        try {
+            String cached = redisTemplate.opsForValue().get(key);
+            if (cached != null && !cached.startsWith(WARMING_PREFIX)) {
+                return Long.parseLong(cached);
+            }
+
+            // Claim the warm-up first, so a write during the count can invalidate it. If another
+            // read is already warming the key, just count without caching.
+            String token = WARMING_PREFIX + UUID.randomUUID();
+            boolean warming = cached == null
+                    && Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, token, WARMING_TIMEOUT));
+
+            long count = notificationRepository.countByUserIdAndReadFalse(userId);
+            if (warming) {
+                redisTemplate.execute(FINISH_WARMING_SCRIPT, List.of(key), token, Long.toString(count),
+                        Long.toString(Duration.ofMinutes(ttlMinutes).toMillis()));
+            }
+            return count;
+        } catch (DataAccessException e) {
+            log.warn("Unread counter unavailable for user {}, counting in Mongo: {}", userId, e.getMessage());
+            return notificationRepository.countByUserIdAndReadFalse(userId);
+        }
+    }
+
+    public void add(String userId, long delta) {
+        try {
+            redisTemplate.execute(ADD_IF_WARM_SCRIPT, List.of(KEY_PREFIX + userId), Long.toString(delta));
+        } catch (DataAccessException e) {
+            log.warn("Could not update unread counter for user {}: {}", userId, e.getMessage());
+            evict(List.of(userId));
+        }
+    }
+
+    public void evict(Collection<String> userIds) {
+        try {
+            redisTemplate.delete(userIds.stream().map(id -> KEY_PREFIX + id).toList());
+        } catch (DataAccessException e) {
+            // Redis is down; stale counters expire with their TTL
+            log.warn("Could not evict unread counters for {}: {}", userIds, e.getMessage());
+        }
+    }
+}
@@ -4,51 +4,58 @@ import com.postit.dto.UserProfileResponse;
 import com.postit.exception.ResourceNotFoundException;
 import com.postit.model.User;
 import com.postit.repository.FollowRepository;
-import com.postit.repository.PostRepository;
 import com.postit.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.ZoneOffset;
+import java.util.function.Predicate;
+
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
     private final FollowRepository followRepository;
-    private final PostRepository postRepository;
+    private final ProfileCache profileCache;
 
     public UserProfileResponse getUserProfile(String userId, String currentUserId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        return getUserProfile(userId, currentUserId, etag -> false);
+    }
 
-        long followersCount = followRepository.countByFollowingId(userId);
-        long followingCount = followRepository.countByFollowerId(userId);
-        long postsCount = postRepository.countByUserIdAndIsDeletedFalse(userId);
+    /**
+     * Returns null instead of the profile if {@code notModified} accepts its weak ETag, built from
+     * the user's updatedAt (bumped by every counter change) and the viewer's follow flag.
+     */
+    public UserProfileResponse getUserProfile(String userId, String currentUserId, Predicate<String> notModified) {
+        UserProfileResponse profile = profileCache.get(userId, () -> loadProfile(userId));
 
         boolean followedByCurrentUser = false;
         if (currentUserId != null && !currentUserId.equals(userId)) {
             followedByCurrentUser = followRepository.existsByFollowerIdAndFollowingId(currentUserId, userId);
         }
 
-        return UserProfileResponse.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .email(user.getEmail())
-                .displayName(user.getDisplayName())
-                .bio(user.getBio())
-                .profileImageUrl(user.getProfileImageUrl())
-                .followersCount(followersCount)
-                .followingCount(followingCount)
-                .postsCount(postsCount)
+        long version = profile.getUpdatedAt() != null ? profile.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+        if (notModified.test("W/\"" + userId + "-" + version + (followedByCurrentUser ? "-f" : "") + "\"")) {
+            return null;
+        }
+
+        // Cached profiles are shared, so the viewer-specific flag goes on a copy
+        return profile.toBuilder()
                 .followedByCurrentUser(followedByCurrentUser)
-                .createdAt(user.getCreatedAt())
                 .build();
     }
 
     public UserProfileResponse getUserProfileByUsername(String username, String currentUserId) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        return getUserProfile(user.getId(), currentUserId);
+        return getUserProfileByUsername(username, currentUserId, etag -> false);
+    }
+
+    public UserProfileResponse getUserProfileByUsername(String username, String currentUserId,
+                                                        Predicate<String> notModified) {
+        String userId = profileCache.resolveUserId(username, () -> userRepository.findByUsername(username)
+                .map(User::getId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found")));
+        return getUserProfile(userId, currentUserId, notModified);
     }
 
     public User getCurrentUser(String userId) {
@@ -60,4 +67,23 @@ public class UserService {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with username: " + username));
     }
+
+    private UserProfileResponse loadProfile(String userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        return UserProfileResponse.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .displayName(user.getDisplayName())
+                .bio(user.getBio())
+                .profileImageUrl(user.getProfileImageUrl())
+                .followersCount(user.getFollowersCount())
+                .followingCount(user.getFollowingCount())
+                .postsCount(user.getPostsCount())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .build();
+    }
 }
@@ -0,0 +1,46 @@
+package com.postit.config;
+
+import org.brotli.dec.BrotliInputStream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The .gz and .br files next to the built frontend are served in place of their sibling, so each
+ * must decode to exactly that file. Fails when the frontend is rebuilt without re-running
+ * frontend/scripts/precompress.js.
+ */
+class PrecompressedResourcesTest {
+
+    private static final Path STATIC_DIR = Paths.get("src/main/resources/static");
+
+    static Stream<Path> variants() throws IOException {
+        try (Stream<Path> files = Files.walk(STATIC_DIR)) {
+            return files.filter(file -> file.toString().endsWith(".gz") || file.toString().endsWith(".br"))
+                    .toList()
+                    .stream();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("variants")
+    void decodesToItsSibling(Path variant) throws IOException {
+        String name = variant.getFileName().toString();
+        Path sibling = variant.resolveSibling(name.substring(0, name.length() - 3));
+        assertThat(sibling).as("uncompressed file for %s", variant).exists();
+
+        try (InputStream in = Files.newInputStream(variant);
+             InputStream decoded = name.endsWith(".gz") ? new GZIPInputStream(in) : new BrotliInputStream(in)) {
+            assertThat(decoded.readAllBytes()).as("decoded %s", variant).isEqualTo(Files.readAllBytes(sibling));
+        }
+    }
+}
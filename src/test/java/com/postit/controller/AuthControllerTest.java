@@ -0,0 +1,175 @@
+package com.postit.controller;
+
+import com.postit.dto.UserProfileResponse;
+import com.postit.exception.GlobalExceptionHandler;
+import com.postit.model.User;
+import com.postit.repository.UserRepository;
+import com.postit.security.AuthenticatedUser;
+import com.postit.security.CustomUserDetailsService;
+import com.postit.security.JwtTokenProvider;
+import com.postit.security.PasswordHashingExecutor;
+import com.postit.service.AuthService;
+import com.postit.service.RefreshTokenStore;
+import com.postit.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthControllerTest {
+
+    private static final String LOGIN = "{\"usernameOrEmail\":\"ada\",\"password\":\"secret\"}";
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private RefreshTokenStore refreshTokenStore;
+    private PasswordHashingExecutor passwordHashing;
+    private AuthService authService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        passwordHashing = new PasswordHashingExecutor(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(passwordHashing, "threads", 1);
+        ReflectionTestUtils.setField(passwordHashing, "queueCapacity", 1);
+        ReflectionTestUtils.invokeMethod(passwordHashing, "init");
+
+        User user = User.builder().id("u1").username("ada").password(passwordEncoder.encode("secret"))
+                .roles(Set.of("USER")).enabled(true).build();
+        CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+        when(userDetailsService.loadUserByUsername("ada")).thenReturn(AuthenticatedUser.from(user));
+
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        when(tokenProvider.generateToken(any())).thenReturn("access");
+        refreshTokenStore = mock(RefreshTokenStore.class);
+        UserService userService = mock(UserService.class);
+        when(userService.getUserProfile(anyString(), isNull())).thenReturn(UserProfileResponse.builder().id("u1").build());
+        UserRepository userRepository = mock(UserRepository.class);
+
+        authService = new AuthService(userRepository, refreshTokenStore, passwordEncoder, passwordHashing,
+                tokenProvider, userDetailsService, userService);
+        ReflectionTestUtils.setField(authService, "ioThreads", 1);
+        ReflectionTestUtils.invokeMethod(authService, "init");
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(authService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        release.countDown();
+        ReflectionTestUtils.invokeMethod(passwordHashing, "shutdown");
+        ReflectionTestUtils.invokeMethod(authService, "shutdown");
+    }
+
+    @Test
+    void fullHashingPoolAnswers429() throws Exception {
+        // One task running and one queued fill a pool of one thread and a queue of one
+        for (int i = 0; i < 2; i++) {
+            passwordHashing.submit(() -> {
+                awaitRelease();
+                return null;
+            });
+        }
+
+        mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void signInWorkRunsOffTheHashingPool() throws Exception {
+        AtomicReference<String> issuingThread = new AtomicReference<>();
+        when(refreshTokenStore.issue(any())).thenAnswer(invocation -> {
+            issuingThread.set(Thread.currentThread().getName());
+            return "refresh";
+        });
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken").value("refresh"));
+
+        assertThat(issuingThread.get()).startsWith("auth-io-");
+    }
+
+    @Test
+    void wrongPasswordIsRejected() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"usernameOrEmail\":\"ada\",\"password\":\"wrong\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void logoutWithoutARefreshTokenRevokesAllOfTheUsersTokens() throws Exception {
+        signInAs("u1");
+
+        mockMvc.perform(post("/api/auth/logout")).andExpect(status().isOk());
+
+        verify(refreshTokenStore).revokeAll("u1");
+        verify(refreshTokenStore, never()).revoke(any());
+    }
+
+    @Test
+    void logoutWithARefreshTokenRevokesOnlyThatToken() throws Exception {
+        signInAs("u1");
+
+        mockMvc.perform(post("/api/auth/logout").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"u1.abc\"}"))
+                .andExpect(status().isOk());
+
+        verify(refreshTokenStore).revoke("u1.abc");
+        verify(refreshTokenStore, never()).revokeAll(any());
+    }
+
+    private static void signInAs(String userId) {
+        AuthenticatedUser user = AuthenticatedUser.fromToken(userId, "ada", List.of("USER"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.postit.kafka;
+
+import com.postit.event.EventType;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of each event type in each encoding.
+ *
+ * <p>Run {@link #main} from the IDE, or after {@code mvn test-compile dependency:build-classpath
+ * -Dmdep.outputFile=cp.txt} with {@code java -cp target/test-classes:target/classes:$(cat cp.txt)
+ * org.openjdk.jmh.Main EventCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventCodecBenchmark {
+
+    @Param({"POST_LIKED", "POST_COMMENTED"})
+    private EventType type;
+
+    @Param({"JSON", "BINARY"})
+    private EventCodec.Encoding encoding;
+
+    private EventCodec codec;
+    private Object event;
+    private Headers headers;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        codec = new EventCodec(Jackson2ObjectMapperBuilder.json().build());
+        event = type == EventType.POST_LIKED ? EventCodecTest.liked() : EventCodecTest.commented();
+        headers = new RecordHeaders();
+        codec.writeHeaders(headers, type, encoding);
+        payload = codec.encode(event, encoding);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(event, encoding);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return codec.decode(type, headers, payload);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,126 @@
+package com.postit.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.postit.event.EventType;
+import com.postit.event.PostCommentedEvent;
+import com.postit.event.PostLikedEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCodecTest {
+
+    // Millisecond precision, which is what the binary layout keeps
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 3, 14, 15, 9, 26, 535_000_000);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final EventCodec codec = new EventCodec(objectMapper);
+
+    static Stream<Arguments> events() {
+        return Arrays.stream(EventCodec.Encoding.values()).flatMap(encoding -> Stream.of(
+                Arguments.of(EventType.POST_LIKED, encoding, liked()),
+                Arguments.of(EventType.POST_LIKED, encoding, PostLikedEvent.builder().likeId("l1").build()),
+                Arguments.of(EventType.POST_COMMENTED, encoding, commented()),
+                Arguments.of(EventType.POST_COMMENTED, encoding, PostCommentedEvent.builder().commentId("c1").build())));
+    }
+
+    @ParameterizedTest(name = "{0} as {1}: {2}")
+    @MethodSource("events")
+    void roundTripsEveryEventType(EventType type, EventCodec.Encoding encoding, Object event) {
+        Headers headers = new RecordHeaders();
+        codec.writeHeaders(headers, type, encoding);
+        byte[] payload = codec.encode(event, encoding);
+
+        assertThat(codec.readType(headers)).isEqualTo(type);
+        assertThat(codec.decode(type, headers, payload)).isInstanceOf(type.getPayloadType()).isEqualTo(event);
+    }
+
+    @Test
+    void coversEveryEventType() {
+        assertThat(events().map(arguments -> arguments.get()[0]).distinct())
+                .containsExactlyInAnyOrder((Object[]) EventType.values());
+    }
+
+    @ParameterizedTest
+    @EnumSource(EventType.class)
+    void decodesLegacyJsonSerializerRecords(EventType type) {
+        Object event = type == EventType.POST_LIKED ? liked() : commented();
+        Headers headers = new RecordHeaders();
+        byte[] payload;
+        try (JsonSerializer<Object> serializer = new JsonSerializer<>()) {
+            payload = serializer.serialize("postit", headers, event);
+        }
+
+        assertThat(headers.lastHeader(EventCodec.TYPE_HEADER)).isNull();
+        assertThat(codec.readType(headers)).isEqualTo(type);
+        assertThat(codec.decode(type, headers, payload)).isEqualTo(event);
+    }
+
+    @Test
+    void legacyPayloadWithoutEventIdDerivesIt() {
+        Headers headers = new RecordHeaders();
+        headers.add("__TypeId__", PostLikedEvent.class.getName().getBytes(StandardCharsets.UTF_8));
+        byte[] payload = "{\"likeId\":\"l9\",\"postId\":\"p1\",\"timestamp\":[2024,3,14,15,9,26]}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        PostLikedEvent decoded = (PostLikedEvent) codec.decode(codec.readType(headers), headers, payload);
+
+        assertThat(decoded.getEventId()).isEqualTo("like:l9");
+        assertThat(decoded.getPostId()).isEqualTo("p1");
+        assertThat(decoded.getTimestamp()).isEqualTo(LocalDateTime.of(2024, 3, 14, 15, 9, 26));
+    }
+
+    @Test
+    void rejectsRecordsWithoutAType() {
+        assertThatThrownBy(() -> codec.readType(new RecordHeaders()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsUnknownBinaryVersions() {
+        Headers headers = new RecordHeaders();
+        codec.writeHeaders(headers, EventType.POST_LIKED, EventCodec.Encoding.BINARY);
+
+        assertThatThrownBy(() -> codec.decode(EventType.POST_LIKED, headers, new byte[] {3}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static PostLikedEvent liked() {
+        return PostLikedEvent.builder()
+                .eventId("like:l1")
+                .likeId("l1")
+                .postId("p1")
+                .postOwnerId("u1")
+                .likeUserId("u2")
+                .likerUsername("ada")
+                .timestamp(TIMESTAMP)
+                .build();
+    }
+
+    static PostCommentedEvent commented() {
+        return PostCommentedEvent.builder()
+                .eventId("comment:c1")
+                .commentId("c1")
+                .postId("p1")
+                .postOwnerId("u1")
+                .commentUserId("u2")
+                .commenterUsername("ada")
+                .commentContent("Nice post — ünïcödé included")
+                .timestamp(TIMESTAMP)
+                .build();
+    }
+}
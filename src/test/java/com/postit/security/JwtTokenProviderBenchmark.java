@@ -0,0 +1,111 @@
+package com.postit.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares answering a request's token from the verified-token cache with verifying its
+ * signature every time, and with the original path ({@link #baseline}), which rebuilt the key
+ * and parser on every call and parsed each token twice. {@code activeTokens} is the number of
+ * distinct tokens in rotation, so values above the cache size measure the miss path.
+ *
+ * <p>Run {@link #main} from the IDE, or after {@code mvn test-compile dependency:build-classpath
+ * -Dmdep.outputFile=cp.txt} with {@code java -cp target/test-classes:target/classes:$(cat cp.txt)
+ * org.openjdk.jmh.Main JwtTokenProviderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+    private static final int CACHE_SIZE = 10_000;
+
+    @Param({"100", "50000"})
+    private int activeTokens;
+
+    private JwtTokenProvider provider;
+    private JwtParser parser;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(provider, "verifiedCacheMaxSize", (long) CACHE_SIZE);
+        provider.init();
+
+        parser = Jwts.parser()
+                .verifyWith(signingKey())
+                .build();
+
+        tokens = new String[activeTokens];
+        for (int i = 0; i < activeTokens; i++) {
+            tokens[i] = provider.generateToken(AuthenticatedUser.fromToken("user" + i, "user" + i, List.of("USER")));
+            provider.parseClaims(tokens[i]);
+        }
+    }
+
+    // JwtAuthenticationFilter before the cache: validateToken, then getUsernameFromToken, each
+    // deriving the key and building a parser
+    @Benchmark
+    public String baseline() {
+        String token = nextToken();
+        Jwts.parser().verifyWith(signingKey()).build().parseSignedClaims(token);
+        return Jwts.parser().verifyWith(signingKey()).build().parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    @Benchmark
+    public Claims cachedParse() {
+        return provider.parseClaims(nextToken()).orElseThrow();
+    }
+
+    @Benchmark
+    public Claims verifyEveryTime() {
+        return parser.parseSignedClaims(nextToken()).getPayload();
+    }
+
+    private static SecretKey signingKey() {
+        return Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenProviderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.postit.service;
+
+import com.mongodb.MongoSocketReadTimeoutException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.ServerAddress;
+import com.postit.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LikeCounterBufferTest {
+
+    private PostRepository postRepository;
+    private LikeCounterBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        postRepository = mock(PostRepository.class);
+        buffer = new LikeCounterBuffer(postRepository, new SimpleMeterRegistry());
+        buffer.add("p1", 3);
+        buffer.add("p2", 2);
+    }
+
+    @Test
+    void partialFailureKeepsOnlyTheFailedDeltas() {
+        when(postRepository.incrementLikeCounts(anyMap())).thenReturn(List.of("p2"));
+
+        buffer.flush();
+
+        assertThat(buffer.pendingDelta("p1")).isZero();
+        assertThat(buffer.pendingDelta("p2")).isEqualTo(2);
+    }
+
+    @Test
+    void unsentBulkKeepsEveryDelta() {
+        when(postRepository.incrementLikeCounts(anyMap())).thenThrow(
+                new DataAccessResourceFailureException("no server", new MongoTimeoutException("no server")));
+
+        buffer.flush();
+
+        assertThat(buffer.pendingDelta("p1")).isEqualTo(3);
+        assertThat(buffer.pendingDelta("p2")).isEqualTo(2);
+    }
+
+    @Test
+    void bulkWithUnknownOutcomeIsNotRetried() {
+        when(postRepository.incrementLikeCounts(anyMap())).thenThrow(new QueryTimeoutException("timed out",
+                new MongoSocketReadTimeoutException("timed out", new ServerAddress(), new IOException())));
+
+        buffer.flush();
+
+        assertThat(buffer.pendingDelta("p1")).isZero();
+        assertThat(buffer.pendingDelta("p2")).isZero();
+    }
+
+    @Test
+    void deltasAddedAfterAFailureMergeWithTheRetriedOnes() {
+        when(postRepository.incrementLikeCounts(anyMap())).thenReturn(List.of("p1", "p2"));
+
+        buffer.flush();
+        buffer.add("p1", 1);
+
+        assertThat(buffer.pendingDelta("p1")).isEqualTo(4);
+    }
+}
@@ -0,0 +1,173 @@
+package com.postit.service;
+
+import com.postit.dto.PostResponse;
+import com.postit.model.Like;
+import com.postit.model.Post;
+import com.postit.model.User;
+import com.postit.repository.LikeRepository;
+import com.postit.repository.PostRepository;
+import com.postit.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that hydrating a page costs the same number of Mongo queries whatever its size.
+ */
+class PostHydratorTest {
+
+    private static final String VIEWER_ID = "viewer";
+    private static final int AUTHORS = 5;
+
+    private UserRepository userRepository;
+    private LikeRepository likeRepository;
+    private PostRepository postRepository;
+    private StringRedisTemplate redisTemplate;
+    private PostHydrator hydrator;
+    private LocalDateTime authorsUpdatedAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        likeRepository = mock(LikeRepository.class);
+        postRepository = mock(PostRepository.class);
+        redisTemplate = mock(StringRedisTemplate.class);
+
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            List<User> users = new ArrayList<>();
+            ids.forEach(id -> users.add(User.builder().id(id).username("user-" + id).displayName(id)
+                    .updatedAt(authorsUpdatedAt).build()));
+            return users;
+        });
+        when(likeRepository.findPostIdsByUserIdAndPostIdIn(eq(VIEWER_ID), anyCollection())).thenAnswer(invocation -> {
+            Collection<String> postIds = invocation.getArgument(1);
+            return postIds.stream()
+                    .filter(id -> Integer.parseInt(id.substring(1)) % 2 == 0)
+                    .map(id -> Like.builder().userId(VIEWER_ID).postId(id).build())
+                    .collect(Collectors.toList());
+        });
+
+        LikedPostIndex likedPostIndex = new LikedPostIndex(redisTemplate, likeRepository);
+        LikeCounterBuffer likeCounterBuffer = new LikeCounterBuffer(postRepository, new SimpleMeterRegistry());
+        hydrator = new PostHydrator(userRepository, likedPostIndex, likeCounterBuffer);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50, 200})
+    void warmIndexHydratesAPageWithOneAuthorQuery(int pageSize) {
+        @SuppressWarnings("unchecked")
+        SetOperations<String, String> setOperations = mock(SetOperations.class);
+        when(redisTemplate.hasKey(anyString())).thenReturn(true);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            Map<Object, Boolean> membership = new HashMap<>();
+            for (Object id : (Object[]) invocation.getRawArguments()[1]) {
+                membership.put(id, Integer.parseInt(((String) id).substring(1)) % 2 == 0);
+            }
+            return membership;
+        });
+
+        List<PostResponse> responses = hydrator.hydrate(page(pageSize), VIEWER_ID);
+
+        assertHydrated(responses, pageSize);
+        assertThat(mongoQueries()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50, 200})
+    void redisOutageFallsBackToOneLikeQueryPerPage(int pageSize) {
+        when(redisTemplate.hasKey(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        List<PostResponse> responses = hydrator.hydrate(page(pageSize), VIEWER_ID);
+
+        assertHydrated(responses, pageSize);
+        assertThat(mongoQueries()).isEqualTo(2);
+    }
+
+    @Test
+    void anonymousViewerSkipsTheLikeLookup() {
+        List<PostResponse> responses = hydrator.hydrate(page(50), null);
+
+        assertThat(responses).hasSize(50).noneMatch(PostResponse::isLikedByCurrentUser);
+        assertThat(mongoQueries()).isEqualTo(1);
+    }
+
+    @Test
+    void profileEditChangesTheFeedEtag() {
+        List<Post> page = page(10);
+        AtomicReference<String> before = new AtomicReference<>();
+        hydrator.hydrateIfModified(page, null, "", etag -> {
+            before.set(etag);
+            return false;
+        });
+
+        authorsUpdatedAt = authorsUpdatedAt.plusMinutes(1);
+        AtomicReference<String> after = new AtomicReference<>();
+        List<PostResponse> responses = hydrator.hydrateIfModified(page, null, "", etag -> {
+            after.set(etag);
+            return etag.equals(before.get());
+        });
+
+        assertThat(after.get()).isNotEqualTo(before.get());
+        assertThat(responses).hasSize(10);
+    }
+
+    @Test
+    void unchangedPageIsNotModified() {
+        List<Post> page = page(10);
+        AtomicReference<String> first = new AtomicReference<>();
+        hydrator.hydrateIfModified(page, null, "", etag -> {
+            first.set(etag);
+            return false;
+        });
+
+        assertThat(hydrator.hydrateIfModified(page, null, "", etag -> etag.equals(first.get()))).isNull();
+    }
+
+    private void assertHydrated(List<PostResponse> responses, int pageSize) {
+        assertThat(responses).hasSize(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            PostResponse response = responses.get(i);
+            assertThat(response.getId()).isEqualTo("p" + i);
+            assertThat(response.getUsername()).isEqualTo("user-a" + (i % AUTHORS));
+            assertThat(response.isLikedByCurrentUser()).isEqualTo(i % 2 == 0);
+        }
+    }
+
+    private long mongoQueries() {
+        return mockingDetails(userRepository).getInvocations().size()
+                + mockingDetails(likeRepository).getInvocations().size()
+                + mockingDetails(postRepository).getInvocations().size();
+    }
+
+    private static List<Post> page(int size) {
+        return IntStream.range(0, size)
+                .mapToObj(i -> Post.builder().id("p" + i).userId("a" + (i % AUTHORS)).content("post " + i).build())
+                .collect(Collectors.toList());
+    }
+}
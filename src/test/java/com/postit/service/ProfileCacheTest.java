@@ -0,0 +1,102 @@
+package com.postit.service;
+
+import com.postit.dto.UserProfileResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the fill and evict scripts against an in-memory stand-in for the two Redis keys per user.
+ */
+class ProfileCacheTest {
+
+    private final Map<String, String> redis = new HashMap<>();
+    private ProfileCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.multiGet(anyList())).thenAnswer(invocation ->
+                ((List<String>) invocation.getArgument(0)).stream().map(redis::get).toList());
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            return args.length == 3 ? fill(keys, args) : evict(keys);
+        });
+
+        cache = new ProfileCache(redisTemplate, mock(RedisMessageListenerContainer.class),
+                Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "l1MaxSize", 100L);
+        ReflectionTestUtils.setField(cache, "l1TtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "l2TtlSeconds", 600L);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+    }
+
+    @Test
+    void loadedProfileIsCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("u1", () -> profile(loads.incrementAndGet()));
+        cache.get("u1", () -> profile(loads.incrementAndGet()));
+
+        assertThat(loads).hasValue(1);
+        assertThat(redis).containsKey("profile:u1");
+    }
+
+    @Test
+    void profileLoadedBeforeAConcurrentEvictIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        UserProfileResponse stale = cache.get("u1", () -> {
+            // The profile changes and is evicted while this load is still reading the old one
+            cache.evict("u1");
+            return profile(loads.incrementAndGet());
+        });
+        UserProfileResponse fresh = cache.get("u1", () -> profile(loads.incrementAndGet()));
+
+        assertThat(stale.getPostsCount()).isEqualTo(1);
+        assertThat(fresh.getPostsCount()).isEqualTo(2);
+        assertThat(cache.get("u1", () -> profile(loads.incrementAndGet())).getPostsCount()).isEqualTo(2);
+    }
+
+    private long fill(List<String> keys, Object[] args) {
+        if (!redis.getOrDefault(keys.get(0), "").equals(args[0])) {
+            return 0L;
+        }
+        redis.put(keys.get(1), (String) args[1]);
+        return 1L;
+    }
+
+    private long evict(List<String> keys) {
+        for (int i = 0; i < keys.size(); i += 2) {
+            redis.merge(keys.get(i), "1", (current, one) -> Long.toString(Long.parseLong(current) + 1));
+            redis.remove(keys.get(i + 1));
+        }
+        return keys.size() / 2;
+    }
+
+    private static UserProfileResponse profile(long postsCount) {
+        return UserProfileResponse.builder().id("u1").postsCount(postsCount).build();
+    }
+}